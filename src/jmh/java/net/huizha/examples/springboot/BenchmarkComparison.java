@@ -0,0 +1,88 @@
+package net.huizha.examples.springboot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compares a JMH JSON result file with a baseline and exits with status 1 if any benchmark got slower by more than the
+ * threshold. When the baseline does not exist yet, the results become the baseline.
+ * <p>
+ * Usage: {@code BenchmarkComparison <baseline.json> <results.json> <threshold-percent>}
+ */
+public final class BenchmarkComparison {
+
+    private record Score(double value, String unit, boolean higherIsBetter) {
+    }
+
+    private BenchmarkComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path baseline = Path.of(args[0]);
+        Path results = Path.of(args[1]);
+        double threshold = Double.parseDouble(args[2]);
+        if (Files.notExists(results)) {
+            System.out.println("No benchmark results at " + results);
+            return;
+        }
+        if (Files.notExists(baseline)) {
+            Files.copy(results, baseline, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Saved " + results + " as the baseline " + baseline);
+            return;
+        }
+        Map<String, Score> before = read(baseline);
+        Map<String, Score> after = read(results);
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, Score> entry : after.entrySet()) {
+            Score current = entry.getValue();
+            Score previous = before.get(entry.getKey());
+            if (previous == null || !previous.unit().equals(current.unit())) {
+                System.out.printf("%-90s %14s %14.3f %9s%n", entry.getKey(), "-", current.value(), "new");
+                continue;
+            }
+            // Positive means slower, whichever direction the mode measures in
+            double change = (current.value() - previous.value()) / previous.value() * 100;
+            if (current.higherIsBetter()) {
+                change = -change;
+            }
+            boolean regression = change > threshold;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%%%s%n", entry.getKey(), previous.value(), current.value(),
+                    change, regression ? "  REGRESSION" : "");
+        }
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %.1f%% against %s%n", regressions, threshold,
+                    baseline);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Score> read(Path file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file.toFile())) {
+            StringBuilder key = new StringBuilder(run.get("benchmark").asText());
+            JsonNode params = run.get("params");
+            if (params != null) {
+                Map<String, String> sorted = new TreeMap<>();
+                params.fields().forEachRemaining(param -> sorted.put(param.getKey(), param.getValue().asText()));
+                key.append(sorted);
+            }
+            JsonNode metric = run.get("primaryMetric");
+            String mode = run.get("mode").asText();
+            scores.put(key.append(' ').append(mode).toString(), new Score(metric.get("score").asDouble(),
+                    metric.get("scoreUnit").asText(), "thrpt".equals(mode)));
+        }
+        return scores;
+    }
+}
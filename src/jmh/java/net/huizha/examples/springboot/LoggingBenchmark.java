@@ -0,0 +1,144 @@
+package net.huizha.examples.springboot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.logging.logback.StructuredLogEncoder;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import net.huizha.examples.springboot.controller.CustomerController;
+import net.huizha.examples.springboot.model.currency.ExchangeResponse;
+import net.huizha.examples.springboot.util.JsonUtil;
+
+/**
+ * Cost of logging on a request thread under the two configurations of {@code logback-spring.xml}: the default
+ * synchronous pattern with caller data ({@code %M}, {@code %L}) and the {@code prod} asynchronous ECS JSON appender
+ * without it. Each call is made {@code stackDepth} frames deep, as from a controller, since collecting caller data
+ * walks the whole stack. Both write to a null stream, so the numbers exclude the console itself; with the
+ * asynchronous appender they are what the request thread sees, including events dropped when the queue fills up.
+ * <p>
+ * {@code payloadEagerInfo} is the former way of logging the currency document, {@code payloadLazyDebug} the current
+ * one, which is not formatted at INFO.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggingBenchmark {
+
+    private static final String PATTERN =
+            "%highlight(%d{yyyy-MM-dd'T'HH:mm:ss.SSSXX} %-5p [%thread] %-40c \\(%M\\(\\):%L\\) - %m%n)";
+
+    @Param({ "sync-caller-data", "async-json" })
+    public String configuration;
+
+    // Frames below the logging call; a Spring MVC controller runs about 100 frames deep in Tomcat
+    @Param({ "100" })
+    public int stackDepth;
+
+    private LoggerContext context;
+
+    private Logger logger;
+
+    private ExchangeResponse response;
+
+    private long afterId;
+
+    @Setup
+    public void setUp() throws IOException {
+        context = new LoggerContext();
+        // StructuredLogEncoder reads its settings from the Spring Environment, which Spring Boot puts here
+        context.putObject(Environment.class.getName(), new StandardEnvironment());
+        OutputStreamAppender<ILoggingEvent> output = new OutputStreamAppender<>();
+        output.setContext(context);
+        output.setOutputStream(OutputStream.nullOutputStream());
+        Appender<ILoggingEvent> appender;
+        if ("sync-caller-data".equals(configuration)) {
+            PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+            encoder.setContext(context);
+            encoder.setPattern(PATTERN);
+            encoder.start();
+            output.setEncoder(encoder);
+            output.start();
+            appender = output;
+        } else {
+            StructuredLogEncoder encoder = new StructuredLogEncoder();
+            encoder.setContext(context);
+            encoder.setFormat("ecs");
+            encoder.start();
+            output.setEncoder(encoder);
+            output.start();
+            AsyncAppender async = new AsyncAppender();
+            async.setContext(context);
+            async.setQueueSize(8192);
+            async.setDiscardingThreshold(819);
+            async.setIncludeCallerData(false);
+            async.setNeverBlock(true);
+            async.addAppender(output);
+            async.start();
+            appender = async;
+        }
+        Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.INFO);
+        root.addAppender(appender);
+        logger = context.getLogger(CustomerController.class);
+        try (InputStream inputStream = getClass().getResourceAsStream("/json/currency.json")) {
+            response = JsonUtil.tune(Jackson2ObjectMapperBuilder.json()).build().readValue(inputStream,
+                    ExchangeResponse.class);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.stop();
+    }
+
+    @Benchmark
+    public void requestLineAtInfo() {
+        atDepth(stackDepth, () -> logger.info("GET /customers - afterId={}; limit={}", afterId++, 100));
+    }
+
+    @Benchmark
+    public void payloadEagerInfo() {
+        atDepth(stackDepth, () -> logger.info(response.toString()));
+    }
+
+    @Benchmark
+    public void payloadLazyDebug() {
+        atDepth(stackDepth, () -> logger.debug("Fetched currency data: {}", response));
+    }
+
+    private static void atDepth(int remaining, Runnable action) {
+        if (remaining <= 0) {
+            action.run();
+        } else {
+            atDepth(remaining - 1, action);
+        }
+    }
+}
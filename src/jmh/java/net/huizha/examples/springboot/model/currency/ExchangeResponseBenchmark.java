@@ -0,0 +1,92 @@
+package net.huizha.examples.springboot.model.currency;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import net.huizha.examples.springboot.util.JsonUtil;
+
+/**
+ * Deserialization of the bundled {@code json/currency.json}: through a pre-built reader from a mapper tuned like the
+ * application's, and through a default Spring-built mapper, plus a column average over the parsed {@link Rates} and a
+ * weekly aggregate query on the {@link RateSeries}. Run with {@code -prof gc} to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExchangeResponseBenchmark {
+
+    private static final LocalDate FROM = LocalDate.parse("2025-03-01");
+
+    private static final LocalDate TO = LocalDate.parse("2025-04-09");
+
+    private ObjectMapper objectMapper;
+
+    private ObjectReader tunedReader;
+
+    private byte[] json;
+
+    private ExchangeResponse response;
+
+    private RateSeries series;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        tunedReader = JsonUtil.tune(Jackson2ObjectMapperBuilder.json()).build().readerFor(ExchangeResponse.class);
+        try (InputStream inputStream = getClass().getResourceAsStream("/json/currency.json")) {
+            json = inputStream.readAllBytes();
+        }
+        response = tunedReader.readValue(json);
+        series = RateSeries.of(response);
+    }
+
+    @Benchmark
+    public ExchangeResponse readExchangeResponse() throws IOException {
+        return objectMapper.readValue(json, ExchangeResponse.class);
+    }
+
+    @Benchmark
+    public ExchangeResponse readExchangeResponseWithTunedReader() throws IOException {
+        return tunedReader.readValue(json);
+    }
+
+    @Benchmark
+    public double averageFirstColumn() {
+        double sum = 0;
+        int count = 0;
+        for (ExchangeResponseRecord exchangeRecord : response.getRecords()) {
+            Rates rates = exchangeRecord.getValues();
+            if (rates.isPresent(0)) {
+                sum += rates.doubleValue(0);
+                count++;
+            }
+        }
+        return sum / count;
+    }
+
+    @Benchmark
+    public List<RateWindow> queryWeeklyAggregates() {
+        return series.query("USD/CNY", FROM, TO, 7);
+    }
+}
@@ -0,0 +1,98 @@
+package net.huizha.examples.springboot.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import net.huizha.examples.springboot.SpringBootExampleApplication;
+import net.huizha.examples.springboot.model.customer.Customer;
+import net.huizha.examples.springboot.model.customer.CustomerDto;
+
+/**
+ * A keyset page of {@code pageSize} customers read the two ways {@link CustomerRepository} offers: as managed
+ * entities copied into DTOs, which is how the service used to read, and as DTOs built by a constructor expression.
+ * The application runs with its own settings, second-level cache included, over 10,000 customers. Run with
+ * {@code -prof gc} to compare the allocation per page as well as the latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerReadPathBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    @Param({ "100", "1000" })
+    private int pageSize;
+
+    private ConfigurableApplicationContext application;
+
+    private CustomerRepository customerRepository;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        application = new SpringApplicationBuilder(SpringBootExampleApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.jpa.show-sql=false",
+                        "--customer.name-index.enabled=false",
+                        "--logging.level.net.huizha.examples=WARN",
+                        "--logging.level.org.hibernate.SQL=WARN");
+        customerRepository = application.getBean(CustomerRepository.class);
+        application.getBean(JdbcTemplate.class).batchUpdate(
+                "INSERT INTO customer (id, first_name, last_name) VALUES (?, ?, ?)",
+                IntStream.rangeClosed(1, ROWS).mapToObj(id -> new Object[] { id, "First" + id, "Last" + id })
+                        .toList());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+    }
+
+    @Benchmark
+    public List<CustomerDto> entityPage() {
+        List<Customer> customers = customerRepository.findByIdGreaterThanOrderByIdAsc(nextAfterId(),
+                Limit.of(pageSize));
+        List<CustomerDto> result = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            result.add(CustomerDto.builder().id(customer.getId()).firstName(customer.getFirstName())
+                    .lastName(customer.getLastName()).version(customer.getVersion()).build());
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<CustomerDto> dtoPage() {
+        return customerRepository.findDtosByIdGreaterThan(nextAfterId(), Limit.of(pageSize));
+    }
+
+    // Walks through the table so the pages differ from call to call
+    private long nextAfterId() {
+        next = (next + pageSize) % (ROWS - pageSize);
+        return next;
+    }
+}
@@ -0,0 +1,102 @@
+package net.huizha.examples.springboot.repository;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import net.huizha.examples.springboot.SpringBootExampleApplication;
+import net.huizha.examples.springboot.model.customer.Customer;
+
+/**
+ * The {@link CustomerRepository} name finders against the application's HSQLDB schema holding {@code rows} customers.
+ * Every first name is shared by 20 customers and every last name by 50. The second-level and query caches are
+ * switched off so each call reaches the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerRepositoryBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    private int rows;
+
+    private ConfigurableApplicationContext application;
+
+    private CustomerRepository customerRepository;
+
+    private int firstNames;
+
+    private int lastNames;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        application = new SpringApplicationBuilder(SpringBootExampleApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                        "--spring.jpa.properties.hibernate.cache.use_query_cache=false",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.net.huizha.examples=WARN",
+                        "--logging.level.org.hibernate.SQL=WARN");
+        customerRepository = application.getBean(CustomerRepository.class);
+        firstNames = Math.max(rows / 20, 1);
+        lastNames = Math.max(rows / 50, 1);
+        JdbcTemplate jdbcTemplate = application.getBean(JdbcTemplate.class);
+        jdbcTemplate.batchUpdate("INSERT INTO customer (id, first_name, last_name) VALUES (?, ?, ?)",
+                IntStream.rangeClosed(1, rows)
+                        .mapToObj(id -> new Object[] { id, firstName(id % firstNames), lastName(id % lastNames) })
+                        .toList());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+    }
+
+    @Benchmark
+    public List<Customer> findByFirstName() {
+        return customerRepository.findByFirstName(firstName(next++ % firstNames));
+    }
+
+    @Benchmark
+    public List<Customer> findByLastNameOrderByFirstNameAsc() {
+        return customerRepository.findByLastNameOrderByFirstNameAsc(lastName(next++ % lastNames));
+    }
+
+    // Drops the last digit, so each prefix matches ten first names
+    @Benchmark
+    public List<Customer> findByFirstNameStartingWith() {
+        String firstName = firstName(next++ % firstNames);
+        return customerRepository.findByFirstNameStartingWith(firstName.substring(0, firstName.length() - 1));
+    }
+
+    private static String firstName(int index) {
+        return String.format("F%06d", index);
+    }
+
+    private static String lastName(int index) {
+        return String.format("L%06d", index);
+    }
+}
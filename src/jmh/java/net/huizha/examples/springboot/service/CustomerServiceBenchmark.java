@@ -0,0 +1,66 @@
+package net.huizha.examples.springboot.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.huizha.examples.springboot.model.customer.Customer;
+import net.huizha.examples.springboot.model.customer.CustomerDto;
+
+/**
+ * Entity to DTO mapping of {@link CustomerService} by {@link CustomerMapper}, for one customer and for a list of
+ * them. The list reads of the service no longer map entities; {@code CustomerReadPathBenchmark} compares them with
+ * the entity path against the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerServiceBenchmark {
+
+    @Param({ "10", "1000" })
+    private int customers;
+
+    private Customer customer;
+
+    private List<Customer> customerList;
+
+    @Setup
+    public void setUp() {
+        customerList = new ArrayList<>(customers);
+        for (long id = 1; id <= customers; id++) {
+            Customer each = new Customer("First" + id, "Last" + id);
+            each.setId(id);
+            customerList.add(each);
+        }
+        customer = customerList.get(0);
+    }
+
+    @Benchmark
+    public CustomerDto toCustomerDto() {
+        return CustomerMapper.toCustomerDto(customer);
+    }
+
+    @Benchmark
+    public List<CustomerDto> toCustomerDtos() {
+        List<CustomerDto> result = new ArrayList<>(customerList.size());
+        for (Customer each : customerList) {
+            result.add(CustomerMapper.toCustomerDto(each));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,43 @@
+package net.huizha.examples.springboot.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.huizha.examples.springboot.model.customer.CustomerDto;
+
+/**
+ * {@link JsonUtil#asJsonString} against creating an {@link ObjectMapper} per call, as it used to. Run with
+ * {@code -prof gc} to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonUtilBenchmark {
+
+    private final CustomerDto customerDto = CustomerDto.builder().id(1L).firstName("Ming").lastName("Li").build();
+
+    @Benchmark
+    public String asJsonString() throws JsonProcessingException {
+        return JsonUtil.asJsonString(customerDto);
+    }
+
+    @Benchmark
+    public String asJsonStringWithNewObjectMapper() throws JsonProcessingException {
+        return new ObjectMapper().writeValueAsString(customerDto);
+    }
+}
@@ -0,0 +1,91 @@
+package net.huizha.examples.springboot.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import net.huizha.examples.springboot.model.currency.ExchangeResponse;
+import net.huizha.examples.springboot.model.customer.CustomerDto;
+
+/**
+ * Encoding and decoding cost of JSON against Smile for the two payloads that travel between services: the bundled
+ * {@code json/currency.json} and a page of 1000 customers as {@code GET /customers} returns it, both through a mapper
+ * tuned like the application's. The encoded size of each payload is printed during setup. Run with {@code -prof gc}
+ * to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({ "currencies", "customers" })
+    public String payload;
+
+    @Param({ "json", "smile" })
+    public String format;
+
+    private Object value;
+
+    private ObjectWriter writer;
+
+    private ObjectReader reader;
+
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper json = JsonUtil.tune(Jackson2ObjectMapperBuilder.json()).build();
+        ObjectMapper mapper = "smile".equals(format) ? JsonUtil.smile(json) : json;
+        JavaType type;
+        if ("currencies".equals(payload)) {
+            try (InputStream inputStream = getClass().getResourceAsStream("/json/currency.json")) {
+                value = json.readValue(inputStream, ExchangeResponse.class);
+            }
+            type = mapper.constructType(ExchangeResponse.class);
+        } else {
+            List<CustomerDto> customers = new ArrayList<>();
+            for (long id = 1; id <= 1000; id++) {
+                customers.add(new CustomerDto(id, "First" + id % 500, "Last" + id % 200, 0L));
+            }
+            value = customers;
+            type = mapper.getTypeFactory().constructCollectionType(List.class, CustomerDto.class);
+        }
+        writer = mapper.writerFor(type);
+        reader = mapper.readerFor(type);
+        encoded = writer.writeValueAsBytes(value);
+        System.out.printf("%n%s as %s: %d bytes%n", payload, format, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        return reader.readValue(encoded);
+    }
+}
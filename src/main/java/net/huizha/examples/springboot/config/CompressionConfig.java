@@ -0,0 +1,22 @@
+package net.huizha.examples.springboot.config;
+
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.web.server.Compression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import net.huizha.examples.springboot.util.ResponseCompression;
+
+/**
+ * Pre-compression of the currency documents, configured by the same {@code server.compression.*} settings as the
+ * compression Tomcat applies to the other responses.
+ */
+@Configuration
+public class CompressionConfig {
+
+    @Bean
+    public ResponseCompression responseCompression(ServerProperties serverProperties) {
+        Compression compression = serverProperties.getCompression();
+        return new ResponseCompression(compression.getEnabled(), compression.getMinResponseSize());
+    }
+}
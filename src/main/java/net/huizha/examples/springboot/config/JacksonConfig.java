@@ -0,0 +1,36 @@
+package net.huizha.examples.springboot.config;
+
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.huizha.examples.springboot.util.JsonCodecs;
+import net.huizha.examples.springboot.util.JsonUtil;
+
+/**
+ * Tunes the {@link ObjectMapper} Spring Boot builds, which MVC, the RestTemplate and the WebClient all share, and
+ * exposes pre-built readers and writers on top of it. MVC and the RestTemplate also read and write Smile, with a copy
+ * of the same mapper, for requests that ask for it.
+ */
+@Configuration
+public class JacksonConfig {
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer tuningCustomizer() {
+        return JsonUtil::tune;
+    }
+
+    // Replaces the Smile converter Spring MVC would register with an untuned mapper
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(ObjectMapper objectMapper) {
+        return new MappingJackson2SmileHttpMessageConverter(JsonUtil.smile(objectMapper));
+    }
+
+    @Bean
+    public JsonCodecs jsonCodecs(ObjectMapper objectMapper) {
+        return new JsonCodecs(objectMapper);
+    }
+}
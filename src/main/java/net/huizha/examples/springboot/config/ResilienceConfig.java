@@ -0,0 +1,107 @@
+package net.huizha.examples.springboot.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.HttpClientErrorException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.huizha.examples.springboot.util.UpstreamGuard;
+
+/**
+ * Builds the {@link UpstreamGuard} around the calls of {@code CurrencyClientService} to the currency server. Client
+ * errors mean the upstream is up and count as successes for the circuit breaker. The adaptive timeout never exceeds
+ * {@code http.client.read-timeout}. Calls run on virtual threads when {@code spring.threads.virtual.enabled} is set.
+ * Publishes the circuit state, the current timeout, free bulkhead slots and the rejected, timed out and hedged calls
+ * as {@code currency.client.upstream.*}.
+ */
+@Configuration
+public class ResilienceConfig {
+
+    private static final String METRIC_PREFIX = "currency.client.upstream.";
+
+    @Value("${currency.client.circuit-breaker.failure-window:20}")
+    private int failureWindow;
+
+    @Value("${currency.client.circuit-breaker.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${currency.client.circuit-breaker.failure-rate:0.5}")
+    private double failureRate;
+
+    @Value("${currency.client.circuit-breaker.open-duration:PT10S}")
+    private Duration openDuration;
+
+    @Value("${currency.client.bulkhead.max-concurrent:20}")
+    private int maxConcurrent;
+
+    @Value("${currency.client.bulkhead.max-wait:PT0.1S}")
+    private Duration maxWait;
+
+    @Value("${currency.client.timeout.latency-window:100}")
+    private int latencyWindow;
+
+    @Value("${currency.client.timeout.min-samples:20}")
+    private int minSamples;
+
+    @Value("${currency.client.timeout.percentile:0.99}")
+    private double timeoutPercentile;
+
+    @Value("${currency.client.timeout.multiplier:3}")
+    private double timeoutMultiplier;
+
+    @Value("${currency.client.timeout.min:PT0.2S}")
+    private Duration minTimeout;
+
+    @Value("${http.client.read-timeout:PT5S}")
+    private Duration readTimeout;
+
+    @Value("${currency.client.hedging.enabled:false}")
+    private boolean hedging;
+
+    @Value("${currency.client.hedging.percentile:0.95}")
+    private double hedgePercentile;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Bean
+    public UpstreamGuard currencyUpstreamGuard(MeterRegistry meterRegistry) {
+        UpstreamGuard guard = new UpstreamGuard("currency-upstream", UpstreamGuard.Settings.builder()
+                .failureWindow(failureWindow)
+                .minimumCalls(minimumCalls)
+                .failureRate(failureRate)
+                .openDuration(openDuration)
+                .maxConcurrent(maxConcurrent)
+                .maxWait(maxWait)
+                .latencyWindow(latencyWindow)
+                .minSamples(minSamples)
+                .timeoutPercentile(timeoutPercentile)
+                .timeoutMultiplier(timeoutMultiplier)
+                .minTimeout(minTimeout)
+                .maxTimeout(readTimeout)
+                .hedging(hedging)
+                .hedgePercentile(hedgePercentile)
+                .virtualThreads(virtualThreads)
+                .build(), e -> !(e instanceof HttpClientErrorException));
+        // 0 closed, 1 open, 2 half-open
+        Gauge.builder(METRIC_PREFIX + "circuit.state", guard, g -> g.getState().ordinal()).register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + "timeout", guard,
+                g -> g.getTimeout() != null ? g.getTimeout().toNanos() / 1e9 : readTimeout.toNanos() / 1e9)
+                .baseUnit("seconds").register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + "bulkhead.available", guard, UpstreamGuard::availableSlots)
+                .register(meterRegistry);
+        for (UpstreamGuard.Rejection reason : UpstreamGuard.Rejection.values()) {
+            FunctionCounter.builder(METRIC_PREFIX + "rejections", guard, g -> g.rejectionCount(reason))
+                    .tag("reason", reason.name().toLowerCase()).register(meterRegistry);
+        }
+        FunctionCounter.builder(METRIC_PREFIX + "timeouts", guard, UpstreamGuard::timeoutCount)
+                .register(meterRegistry);
+        FunctionCounter.builder(METRIC_PREFIX + "hedges", guard, UpstreamGuard::hedgeCount).register(meterRegistry);
+        return guard;
+    }
+}
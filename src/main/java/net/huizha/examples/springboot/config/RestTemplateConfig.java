@@ -1,19 +1,140 @@
 package net.huizha.examples.springboot.config;
 
+import java.net.http.HttpClient;
 import java.time.Duration;
 
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.pool.PoolConcurrencyPolicy;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.observation.ClientRequestObservationConvention;
 import org.springframework.web.client.RestTemplate;
 
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Builds the {@link RestTemplate} used for upstream calls. By default it runs on a pooled Apache HttpClient 5 with
+ * per-route and total connection limits, idle and expired connection eviction and pool metrics. With
+ * {@code http.client.http2-enabled=true} it runs on the JDK {@link HttpClient} instead, which negotiates HTTP/2 and
+ * multiplexes requests over a connection pool managed by the JDK. That client only honours the connect and read
+ * timeouts: the {@code http.client.pool.*} settings, pool metrics and {@code http.client.compression-enabled} do not
+ * apply to it. Either way its calls are timed as {@code http.client.requests}, tagged with their result by
+ * {@link UpstreamRequestObservationConvention}.
+ */
+@Slf4j
 @Configuration
 public class RestTemplateConfig {
 
+    private static final String HTTP2_ENABLED = "http.client.http2-enabled";
+
+    @Value("${http.client.connect-timeout:PT5S}")
+    private Duration connectTimeout;
+
+    @Value("${http.client.read-timeout:PT5S}")
+    private Duration readTimeout;
+
+    // How long a request waits for a pooled connection before failing
+    @Value("${http.client.pool.lease-timeout:PT1S}")
+    private Duration leaseTimeout;
+
+    @Value("${http.client.pool.max-total:200}")
+    private int maxTotal;
+
+    @Value("${http.client.pool.max-per-route:50}")
+    private int maxPerRoute;
+
+    @Value("${http.client.pool.idle-eviction:PT30S}")
+    private Duration idleEviction;
+
+    @Value("${http.client.pool.time-to-live:PT5M}")
+    private Duration timeToLive;
+
+    // Sends Accept-Encoding: gzip, deflate and decompresses transparently
+    @Value("${http.client.compression-enabled:true}")
+    private boolean compressionEnabled;
+
+    @Bean
+    public RestTemplate restTemplate(RestTemplateBuilder builder, ClientHttpRequestFactory clientHttpRequestFactory) {
+        return builder.requestFactory(() -> clientHttpRequestFactory).build();
+    }
+
+    // Picked up by the observation customizer Spring Boot applies to RestTemplateBuilder
+    @Bean
+    public ClientRequestObservationConvention upstreamRequestObservationConvention() {
+        return new UpstreamRequestObservationConvention();
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = HTTP2_ENABLED, havingValue = "false", matchIfMissing = true)
+    public PoolingHttpClientConnectionManager httpClientConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setPoolConcurrencyPolicy(PoolConcurrencyPolicy.STRICT)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.of(timeToLive))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = HTTP2_ENABLED, havingValue = "false", matchIfMissing = true)
+    public ClientHttpRequestFactory httpComponentsClientHttpRequestFactory(
+            PoolingHttpClientConnectionManager connectionManager) {
+        HttpClientBuilder httpClientBuilder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(leaseTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleEviction));
+        if (!compressionEnabled) {
+            httpClientBuilder.disableContentCompression();
+        }
+        return new HttpComponentsClientHttpRequestFactory(httpClientBuilder.build());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = HTTP2_ENABLED, havingValue = "false", matchIfMissing = true)
+    public MeterBinder httpClientConnectionPoolMetrics(PoolingHttpClientConnectionManager connectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "rest-template");
+    }
+
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
-        return builder.connectTimeout(Duration.ofSeconds(5))
-                .readTimeout(Duration.ofSeconds(5))
+    @ConditionalOnProperty(name = HTTP2_ENABLED, havingValue = "true")
+    public ClientHttpRequestFactory jdkClientHttpRequestFactory() {
+        // The JDK client neither asks for nor decodes compressed responses and keeps no configurable pool
+        if (compressionEnabled) {
+            LOGGER.warn("http.client.compression-enabled is ignored by the RestTemplate with {}=true: responses "
+                    + "arrive uncompressed", HTTP2_ENABLED);
+        }
+        LOGGER.info("http.client.pool.* settings and pool metrics do not apply to the RestTemplate with {}=true",
+                HTTP2_ENABLED);
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
                 .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        return requestFactory;
     }
 }
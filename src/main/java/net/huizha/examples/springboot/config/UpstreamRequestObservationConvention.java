@@ -0,0 +1,57 @@
+package net.huizha.examples.springboot.config;
+
+import java.io.InterruptedIOException;
+import java.net.http.HttpTimeoutException;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.observation.ClientRequestObservationContext;
+import org.springframework.http.client.observation.DefaultClientRequestObservationConvention;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+
+/**
+ * Adds a {@code result} tag to the {@code http.client.requests} timer of the upstream {@link
+ * org.springframework.web.client.RestTemplate}, so calls can be counted by what the caller saw:
+ * <ul>
+ * <li>{@code success}: any 1xx, 2xx or 3xx response, including 304.</li>
+ * <li>{@code not_found}: a 404 response.</li>
+ * <li>{@code timeout}: no response because connecting, leasing a pooled connection or reading timed out.</li>
+ * <li>{@code error}: any other response status or I/O failure.</li>
+ * </ul>
+ */
+public class UpstreamRequestObservationConvention extends DefaultClientRequestObservationConvention {
+
+    static final String RESULT = "result";
+
+    @Override
+    public KeyValues getLowCardinalityKeyValues(ClientRequestObservationContext context) {
+        return super.getLowCardinalityKeyValues(context).and(KeyValue.of(RESULT, result(context)));
+    }
+
+    private static String result(ClientRequestObservationContext context) {
+        if (context.getResponse() != null) {
+            try {
+                int status = context.getResponse().getStatusCode().value();
+                if (status == HttpStatus.NOT_FOUND.value()) {
+                    return "not_found";
+                }
+                return status < 400 ? "success" : "error";
+            } catch (Exception e) {
+                return "error";
+            }
+        }
+        return isTimeout(context.getError()) ? "timeout" : "error";
+    }
+
+    // The Apache client reports socket, connect and lease timeouts as subclasses of InterruptedIOException, the JDK
+    // client as HttpTimeoutException; RestTemplate wraps either in a ResourceAccessException
+    private static boolean isTimeout(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedIOException || cause instanceof HttpTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
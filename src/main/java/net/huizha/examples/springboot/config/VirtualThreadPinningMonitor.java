@@ -0,0 +1,79 @@
+package net.huizha.examples.springboot.config;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streams the JFR {@code jdk.VirtualThreadPinned} event while virtual threads are enabled. A virtual thread is pinned
+ * when it blocks inside a {@code synchronized} block or a native frame, which holds its carrier thread. Each pinning
+ * longer than the threshold is counted in {@code jvm.threads.virtual.pinned}, and the first occurrence of each stack is
+ * logged so the hotspot can be found.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+@Slf4j
+public class VirtualThreadPinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private static final int LOGGED_FRAMES = 12;
+
+    private final RecordingStream recordingStream = new RecordingStream();
+
+    private final Counter pinnedCounter;
+
+    private final Set<String> reportedStacks = ConcurrentHashMap.newKeySet();
+
+    public VirtualThreadPinningMonitor(MeterRegistry meterRegistry,
+            @Value("${virtual-threads.pinning.threshold:PT0.02S}") Duration threshold) {
+        this.pinnedCounter = Counter.builder("jvm.threads.virtual.pinned")
+                .description("Virtual threads pinned to their carrier for longer than the threshold")
+                .register(meterRegistry);
+        recordingStream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+    }
+
+    @PostConstruct
+    void start() {
+        recordingStream.startAsync();
+    }
+
+    @PreDestroy
+    void stop() {
+        recordingStream.close();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedCounter.increment();
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        if (stackTrace == null) {
+            return;
+        }
+        String stack = stackTrace.getFrames().stream()
+                .filter(RecordedFrame::isJavaFrame)
+                .limit(LOGGED_FRAMES)
+                .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":"
+                        + frame.getLineNumber())
+                .collect(Collectors.joining("\n\tat "));
+        if (reportedStacks.add(stack)) {
+            LOGGER.warn("Virtual thread pinned for {} ms\n\tat {}", event.getDuration().toMillis(), stack);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package net.huizha.examples.springboot.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Builds the non-blocking {@link WebClient} for the currency server on Reactor Netty. It shares the
+ * {@code http.client.*} timeout, pool and compression settings with the blocking client in
+ * {@link RestTemplateConfig}, so a handful of event-loop threads carry every in-flight upstream call.
+ */
+@Configuration
+public class WebClientConfig {
+
+    @Value("${http.client.connect-timeout:PT5S}")
+    private Duration connectTimeout;
+
+    @Value("${http.client.read-timeout:PT5S}")
+    private Duration readTimeout;
+
+    @Value("${http.client.pool.max-per-route:50}")
+    private int maxConnections;
+
+    @Value("${http.client.pool.idle-eviction:PT30S}")
+    private Duration idleEviction;
+
+    @Value("${http.client.pool.time-to-live:PT5M}")
+    private Duration timeToLive;
+
+    @Value("${http.client.compression-enabled:true}")
+    private boolean compressionEnabled;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider currencyConnectionProvider() {
+        return ConnectionProvider.builder("currency")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(maxConnections * 10)
+                .maxIdleTime(idleEviction)
+                .maxLifeTime(timeToLive)
+                .evictInBackground(idleEviction)
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public WebClient currencyWebClient(WebClient.Builder builder, ConnectionProvider currencyConnectionProvider,
+            @Value("${api.base-url:http://localhost:8080/api/v1}") String baseUrl) {
+        HttpClient httpClient = HttpClient.create(currencyConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(readTimeout)
+                .compress(compressionEnabled);
+        return builder.clientConnector(new ReactorClientHttpConnector(httpClient)).baseUrl(baseUrl).build();
+    }
+}
@@ -1,19 +1,23 @@
 package net.huizha.examples.springboot.controller;
 
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import net.huizha.examples.springboot.model.currency.ExchangeResponse;
+import net.huizha.examples.springboot.service.CurrencyClientService;
+import net.huizha.examples.springboot.util.ResponseCompression;
+import net.huizha.examples.springboot.util.UpstreamGuard;
 
 @RestController
 @RequestMapping("/currency-client")
@@ -22,29 +26,34 @@ import net.huizha.examples.springboot.model.currency.ExchangeResponse;
 @Tag(name = "Currency Controller", description = "Currency server and client controller")
 public class CurrencyClientController {
 
-    private final RestTemplate restTemplate;
+    private final CurrencyClientService currencyClientService;
 
-    // Base URL of the API, configurable via application properties
-    @Value("${api.base-url:http://localhost:8080/api/v1}")
-    private String baseUrl;
+    private final ResponseCompression responseCompression;
 
     @GetMapping("currencies")
-    public ExchangeResponse getCurrencyData() {
-        String url = baseUrl + "/currency-server/currencies";
+    public ResponseEntity<byte[]> getCurrencyData(
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         try {
-            ExchangeResponse exchangeResponse = restTemplate.getForObject(url, ExchangeResponse.class);
-            if (exchangeResponse != null) {
-                LOGGER.info(exchangeResponse.toString());
-                return exchangeResponse;
-            } else {
-                LOGGER.info("ExchangeResponse=null, return \"{}\"", HttpStatus.NO_CONTENT);
-                throw new ResponseStatusException(HttpStatus.NO_CONTENT, "No data returned from currency server");
+            CurrencyClientService.CachedResponse current = currencyClientService.getCurrencyData()
+                    .orElseThrow(() -> {
+                        LOGGER.info("ExchangeResponse=null, return \"{}\"", HttpStatus.NO_CONTENT);
+                        return new ResponseStatusException(HttpStatus.NO_CONTENT,
+                                "No data returned from currency server");
+                    });
+            // Spring answers a matching If-None-Match or If-Modified-Since with 304 without writing the body
+            ResponseEntity.BodyBuilder builder = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+            if (current.lastModified() > 0) {
+                builder.lastModified(current.lastModified());
             }
+            return responseCompression.body(builder, current.etag(), current.json(), current.gzip(), acceptEncoding);
         } catch (HttpClientErrorException.NotFound notFoundEx) {
             LOGGER.warn("Currency server returned 404: {}", notFoundEx.getMessage());
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Data not found on currency server");
+        } catch (UpstreamGuard.RejectedException rejectedEx) {
+            LOGGER.warn("Currency server not called: {}", rejectedEx.getMessage());
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Currency server unavailable");
         } catch (RestClientException rcEx) {
-            LOGGER.error("Error during GET request to {}: {}", url, rcEx.getMessage());
+            LOGGER.error("Error during GET request to currency server: {}", rcEx.getMessage());
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Currency client failed to fetch data");
         }
     }
@@ -1,40 +1,156 @@
 package net.huizha.examples.springboot.controller;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.time.LocalDate;
 
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
 
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.huizha.examples.springboot.model.currency.ExchangeResponse;
+import net.huizha.examples.springboot.model.currency.RateSeries;
+import net.huizha.examples.springboot.model.currency.RateSeriesResponse;
+import net.huizha.examples.springboot.service.CurrencyDataProvider;
+import net.huizha.examples.springboot.util.ResponseCompression;
+import net.huizha.examples.springboot.util.WireFormat;
 
 @RestController
 @RequestMapping("/currency-server")
+@RequiredArgsConstructor
 @Slf4j
 @Tag(name = "Currency Controller", description = "Currency server and client controller")
 public class CurrencyServerController {
 
-    private static final String CURRENCY_JSON_FILE = "json/currency.json";
+    private final CurrencyDataProvider currencyDataProvider;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ResponseCompression responseCompression;
+
+    // Page size used when the client asks for a page without giving its size
+    @Value("${currency.server.page.default-size:100}")
+    private int defaultPageSize;
+
+    // Upper bound on the page size a client can ask for
+    @Value("${currency.server.page.max-size:1000}")
+    private int maxPageSize;
 
     @GetMapping("/currencies")
-    public ExchangeResponse getCurrencyData() throws IOException {
-        LOGGER.info("GET /currencies request received");
-        try (InputStream inputStream = new ClassPathResource(CURRENCY_JSON_FILE).getInputStream()) {
-            ExchangeResponse result = objectMapper.readValue(inputStream, ExchangeResponse.class);
-            LOGGER.info("result={}", result);
-            return result;
-        } catch (IOException e) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Currency data not found", e);
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Currency data found",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = ExchangeResponse.class)),
+                            @Content(mediaType = WireFormat.SMILE_VALUE,
+                                    schema = @Schema(implementation = ExchangeResponse.class)) }),
+            @ApiResponse(responseCode = "304", description = "Currency data not modified", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Invalid page", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Currency data not found", content = @Content) })
+    public ResponseEntity<byte[]> getCurrencyData(
+            @Parameter(description = "page of records to return, from 1; all records when neither pageNum nor "
+                    + "pageSize is given") @RequestParam(required = false) Integer pageNum,
+            @Parameter(description = "number of records per page") @RequestParam(required = false) Integer pageSize,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest webRequest) throws JsonProcessingException {
+        LOGGER.debug("GET /currencies request received - pageNum={}; pageSize={}", pageNum, pageSize);
+        if ((pageNum != null && pageNum < 1) || (pageSize != null && pageSize < 1)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "pageNum and pageSize must be >= 1");
+        }
+        CurrencyDataProvider.Snapshot snapshot = currencyDataProvider.getSnapshot()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Currency data not found"));
+        // JSON unless Smile is asked for explicitly; the Smile representation has its own ETag
+        WireFormat format = WireFormat.negotiate(accept);
+        // A matching If-None-Match or If-Modified-Since is answered with 304 by Spring before the body is written.
+        // All pages share the ETag of the data, so a client can tell when pages come from different versions.
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(format.getMediaType())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT).lastModified(snapshot.lastModified());
+        if (pageNum == null && pageSize == null) {
+            // Serialized, gzipped and encoded in Smile once when the data was loaded
+            if (format == WireFormat.SMILE) {
+                return response.eTag(format.etag(snapshot.etag())).body(snapshot.smile());
+            }
+            return responseCompression.body(response, snapshot.etag(), snapshot.json(), snapshot.gzip(),
+                    acceptEncoding);
+        }
+        // Revalidations of a page are answered before the page is looked up or encoded
+        String etag = format.etag(snapshot.etag());
+        if (isNotModified(webRequest, etag, snapshot.lastModified())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+        }
+        // Encoded and gzipped on the first read of each page of this version
+        CurrencyDataProvider.EncodedPage page = currencyDataProvider.getPage(snapshot, pageNum == null ? 1 : pageNum,
+                Math.min(pageSize == null ? defaultPageSize : pageSize, maxPageSize), format);
+        return responseCompression.body(response, etag, page.body(), page.gzip(), acceptEncoding);
+    }
+
+    /**
+     * Spring keeps the first ETag a check writes to the response, even when the page then goes out gzipped under
+     * another one, so the ETag is only checked against a current representation the client holds. Stale ETags are
+     * left to the check Spring makes on the response.
+     */
+    private static boolean isNotModified(WebRequest webRequest, String etag, long lastModified) {
+        String ifNoneMatch = webRequest.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null) {
+            return webRequest.checkNotModified(lastModified);
+        }
+        String gzipETag = ResponseCompression.gzipETag(etag);
+        String heldETag = ifNoneMatch.contains(gzipETag) ? gzipETag : ifNoneMatch.contains(etag) ? etag : null;
+        return heldETag != null && webRequest.checkNotModified(heldETag, lastModified);
+    }
+
+    @GetMapping("/rates")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Rates of the currency pair, aggregated per window",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = RateSeriesResponse.class)),
+                            @Content(mediaType = WireFormat.SMILE_VALUE,
+                                    schema = @Schema(implementation = RateSeriesResponse.class)) }),
+            @ApiResponse(responseCode = "304", description = "Currency data not modified", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Invalid date range or window", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Currency data or pair not found", content = @Content) })
+    public ResponseEntity<RateSeriesResponse> getRates(@RequestParam String pair,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "1") int window,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
+        LOGGER.debug("GET /rates request received for {} from {} to {} per {} day(s)", pair, from, to, window);
+        CurrencyDataProvider.Snapshot snapshot = currencyDataProvider.getSnapshot()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Currency data not found"));
+        RateSeries series = snapshot.rateSeries();
+        if (!series.contains(pair)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Currency pair not found: " + pair);
+        }
+        if (window < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "window must be at least one day");
+        }
+        LocalDate start = from != null ? from : series.firstDate().orElseThrow();
+        LocalDate end = to != null ? to : series.lastDate().orElseThrow();
+        if (start.isAfter(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to");
         }
+        // Every query is answered from the same snapshot, so the data ETag also validates the query results. The
+        // format is negotiated like that of the currency documents, so each one has its own ETag.
+        WireFormat format = WireFormat.negotiate(accept);
+        return ResponseEntity.ok().contentType(format.getMediaType()).header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .eTag(format.etag(snapshot.etag())).lastModified(snapshot.lastModified())
+                .body(new RateSeriesResponse(pair, start, end, window, series.query(pair, start, end, window)));
     }
 }
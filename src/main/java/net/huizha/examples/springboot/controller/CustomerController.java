@@ -1,19 +1,38 @@
 package net.huizha.examples.springboot.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -26,8 +45,13 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import net.huizha.examples.springboot.model.customer.CustomerBatchResult;
+import net.huizha.examples.springboot.model.customer.CustomerBulkResult;
 import net.huizha.examples.springboot.model.customer.CustomerDto;
+import net.huizha.examples.springboot.model.customer.CustomerPatch;
 import net.huizha.examples.springboot.service.CustomerService;
+import net.huizha.examples.springboot.util.JsonCodecs;
+import net.huizha.examples.springboot.util.WireFormat;
 
 @RestController
 @RequestMapping("/customers")
@@ -38,8 +62,34 @@ public class CustomerController {
 
     private static final String MSG_CUSTOMER_NOT_FOUND = "Customer(id=%d) not found";
 
+    private static final String MSG_CUSTOMERS_NOT_FOUND = "None of the customers %s found";
+
+    private static final String MSG_CUSTOMER_MODIFIED = "Customer(id=%d) was modified since it was read";
+
     private final CustomerService customerService;
 
+    private final JsonCodecs jsonCodecs;
+
+    // Page size used when the client does not ask for one
+    @Value("${customer.page.default-size:100}")
+    private int defaultPageSize;
+
+    // Upper bound on the page size a client can ask for
+    @Value("${customer.page.max-size:1000}")
+    private int maxPageSize;
+
+    // Number of name suggestions returned when the client does not ask for a number
+    @Value("${customer.suggest.default-size:10}")
+    private int defaultSuggestSize;
+
+    // Upper bound on the number of name suggestions a client can ask for
+    @Value("${customer.suggest.max-size:100}")
+    private int maxSuggestSize;
+
+    // Upper bound on the ids of a bulk update or delete
+    @Value("${customer.bulk.max-ids:1000}")
+    private int maxBulkIds;
+
     @PostMapping
     @ResponseStatus(code = HttpStatus.CREATED)
     @Operation(summary = "Create a customer", description = "Create a new customer")
@@ -55,76 +105,302 @@ public class CustomerController {
                     content = @Content(schema = @Schema(implementation = CustomerDto.class)))
             @RequestBody
             @Valid CustomerDto customerDto) {
-        LOGGER.info("POST /customers - customerDto={}", customerDto);
+        LOGGER.debug("POST /customers - customerDto={}", customerDto);
         return customerService.createCustomer(customerDto);
     }
 
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Create customers in bulk",
+            description = "Create customers from a JSON array; invalid rows are skipped and reported")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Valid customers created",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CustomerBatchResult.class)) }),
+            @ApiResponse(responseCode = "400", description = "Bad request", content = @Content) })
+    public CustomerBatchResult createCustomers(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "CustomerDto objects to be created",
+                    required = true,
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = CustomerDto.class))))
+            @RequestBody List<CustomerDto> customerDtos) {
+        LOGGER.debug("POST /customers/batch - size={}", customerDtos.size());
+        return customerService.createCustomers(customerDtos.iterator());
+    }
+
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Create customers in bulk from a stream",
+            description = "Create customers from newline-delimited JSON without buffering the request body; "
+                    + "invalid rows are skipped and reported")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Valid customers created",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CustomerBatchResult.class)) }),
+            @ApiResponse(responseCode = "400", description = "Bad request", content = @Content) })
+    public CustomerBatchResult createCustomersFromStream(InputStream inputStream) throws IOException {
+        LOGGER.debug("POST /customers/batch - ndjson");
+        try (MappingIterator<CustomerDto> customerDtos = jsonCodecs.getCustomerDtoReader().readValues(inputStream)) {
+            return customerService.createCustomers(customerDtos);
+        } catch (RuntimeException e) {
+            // MappingIterator wraps parse and mapping errors in unchecked exceptions
+            if (e.getCause() instanceof JsonProcessingException) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed customer line", e);
+            }
+            throw e;
+        }
+    }
+
     @GetMapping("/{id}")
-    @Operation(summary = "Get a customer by id", description = "Get an existing customer by id")
+    @Operation(summary = "Get a customer by id",
+            description = "Get an existing customer by id; its version is returned as the ETag")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200",
                     description = "Customer found",
                     content = { @Content(mediaType = "application/json",
-                            schema = @Schema(implementation = CustomerDto.class)) }),
+                            schema = @Schema(implementation = CustomerDto.class)),
+                            @Content(mediaType = WireFormat.SMILE_VALUE,
+                                    schema = @Schema(implementation = CustomerDto.class)) }),
+            @ApiResponse(responseCode = "304", description = "Customer not modified", content = @Content),
             @ApiResponse(responseCode = "404", description = "Customer not found", content = @Content) })
-    public CustomerDto getCustomerById(
-            @Parameter(description = "id of customer to be retrieved") @PathVariable long id) {
-        LOGGER.info("GET /customers/{} - id={}", id, id);
+    public ResponseEntity<CustomerDto> getCustomerById(
+            @Parameter(description = "id of customer to be retrieved") @PathVariable long id,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
+        LOGGER.debug("GET /customers/{} - id={}", id, id);
         Optional<CustomerDto> customerDto = customerService.getCustomerById(id);
         if (customerDto.isPresent()) {
-            return customerDto.get();
+            // A matching If-None-Match is answered with 304 by Spring
+            return customerResponse(customerDto.get(), WireFormat.negotiate(accept));
         } else {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, String.format(MSG_CUSTOMER_NOT_FOUND, id));
         }
     }
 
     @GetMapping
-    @Operation(summary = "Get all customers", description = "Get all customers")
+    @Operation(summary = "Get customers", description = "Get a page of customers ordered by id, "
+            + "starting after the given id. The next page is advertised in the Link header.")
     @ApiResponses(value = { @ApiResponse(responseCode = "200",
             description = "Operation succeeded",
             content = { @Content(mediaType = "application/json",
-                    array = @ArraySchema(schema = @Schema(implementation = CustomerDto.class))) }) })
-    public List<CustomerDto> getCustomers() {
-        LOGGER.info("GET /customers");
-        return customerService.getCustomers();
+                    array = @ArraySchema(schema = @Schema(implementation = CustomerDto.class))) }),
+            @ApiResponse(responseCode = "400", description = "Bad request", content = @Content) })
+    public ResponseEntity<List<CustomerDto>> getCustomers(
+            @Parameter(description = "id after which the page starts") @RequestParam(defaultValue = "0") long afterId,
+            @Parameter(description = "maximum number of customers in the page") @RequestParam(required = false)
+            Integer limit) {
+        LOGGER.debug("GET /customers - afterId={}; limit={}", afterId, limit);
+        if (afterId < 0 || (limit != null && limit < 1)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "afterId must be >= 0 and limit must be >= 1");
+        }
+        int pageSize = Math.min(limit == null ? defaultPageSize : limit, maxPageSize);
+        List<CustomerDto> customers = customerService.getCustomers(afterId, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (customers.size() == pageSize) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("afterId", customers.get(customers.size() - 1).getId())
+                    .replaceQueryParam("limit", pageSize)
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(customers);
+    }
+
+    @GetMapping(path = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream all customers",
+            description = "Stream all customers ordered by id as newline-delimited JSON")
+    @ApiResponses(value = { @ApiResponse(responseCode = "200",
+            description = "Operation succeeded",
+            content = { @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                    schema = @Schema(implementation = CustomerDto.class)) }) })
+    public ResponseEntity<StreamingResponseBody> streamCustomers() {
+        LOGGER.debug("GET /customers/stream");
+        ObjectWriter writer = jsonCodecs.getCustomerDtoWriter();
+        StreamingResponseBody body = outputStream -> {
+            customerService.streamCustomers(customerDto -> writeLine(writer, outputStream, customerDto));
+            outputStream.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @GetMapping("/suggest")
+    @Operation(summary = "Suggest customer names",
+            description = "Get first and last names of customers starting with a prefix, in ascending order")
+    @ApiResponses(value = { @ApiResponse(responseCode = "200",
+            description = "Operation succeeded",
+            content = { @Content(mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = String.class))) }),
+            @ApiResponse(responseCode = "400", description = "Bad request", content = @Content) })
+    public List<String> suggestNames(
+            @Parameter(description = "case-sensitive start of the names") @RequestParam String prefix,
+            @Parameter(description = "maximum number of names") @RequestParam(required = false) Integer limit) {
+        LOGGER.debug("GET /customers/suggest - prefix={}; limit={}", prefix, limit);
+        if (prefix.isBlank() || (limit != null && limit < 1)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "prefix must not be blank and limit must be >= 1");
+        }
+        return customerService.suggestNames(prefix, Math.min(limit == null ? defaultSuggestSize : limit,
+                maxSuggestSize));
     }
 
     @PutMapping("/{id}")
-    @Operation(summary = "Update a customer", description = "Update an existing customer")
+    @Operation(summary = "Update a customer", description = "Update an existing customer. If-Match must hold the "
+            + "ETag the customer was read with, or * to overwrite whatever version is current.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200",
                     description = "Customer updated",
                     content = { @Content(mediaType = "application/json",
-                            schema = @Schema(implementation = CustomerDto.class)) }),
-            @ApiResponse(responseCode = "404", description = "Customer not found", content = @Content) })
-    public CustomerDto updateCustomerById(
+                            schema = @Schema(implementation = CustomerDto.class)),
+                            @Content(mediaType = WireFormat.SMILE_VALUE,
+                                    schema = @Schema(implementation = CustomerDto.class)) }),
+            @ApiResponse(responseCode = "404", description = "Customer not found", content = @Content),
+            @ApiResponse(responseCode = "412", description = "Customer changed since it was read",
+                    content = @Content),
+            @ApiResponse(responseCode = "428", description = "If-Match missing", content = @Content) })
+    public ResponseEntity<CustomerDto> updateCustomerById(
             @Parameter(description = "id of customer to be updated") @PathVariable long id,
+            @Parameter(description = "ETag of the customer being replaced, or *")
+            @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept,
             @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "CustomerDto object to be updated",
                     required = true,
                     content = @Content(schema = @Schema(implementation = CustomerDto.class)))
             @RequestBody
             @Valid CustomerDto customerDto) {
-        LOGGER.info("PUT /customers - id={}; customerDto={}", id, customerDto);
+        LOGGER.debug("PUT /customers - id={}; ifMatch={}; customerDto={}", id, ifMatch, customerDto);
+        if (ifMatch == null) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_REQUIRED,
+                    "If-Match with the ETag of the customer is required");
+        }
         customerDto.setId(id);
-        Optional<CustomerDto> updatedCustomer = customerService.updateCustomer(customerDto);
+        Optional<CustomerDto> updatedCustomer;
+        try {
+            updatedCustomer = customerService.updateCustomer(customerDto, expectedVersionOf(ifMatch, id));
+        } catch (OptimisticLockingFailureException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED,
+                    String.format(MSG_CUSTOMER_MODIFIED, id), e);
+        }
         if (updatedCustomer.isEmpty()) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, String.format(MSG_CUSTOMER_NOT_FOUND, id));
         } else {
-            return updatedCustomer.get();
+            return customerResponse(updatedCustomer.get(), WireFormat.negotiate(accept));
         }
     }
 
+    @PatchMapping
+    @Operation(summary = "Update customers in bulk",
+            description = "Set the given names on all customers with the given ids in a single statement; "
+                    + "names left out are kept")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Customers updated",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CustomerBulkResult.class)) }),
+            @ApiResponse(responseCode = "400", description = "Bad request", content = @Content),
+            @ApiResponse(responseCode = "404", description = "None of the customers found", content = @Content) })
+    public CustomerBulkResult updateCustomers(
+            @Parameter(description = "comma-separated ids of customers to be updated") @RequestParam List<Long> ids,
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "Names to be set",
+                    required = true,
+                    content = @Content(schema = @Schema(implementation = CustomerPatch.class)))
+            @RequestBody
+            @Valid CustomerPatch customerPatch) {
+        LOGGER.debug("PATCH /customers - ids={}; customerPatch={}", ids, customerPatch);
+        if (customerPatch.getFirstName() == null && customerPatch.getLastName() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "firstName or lastName must be given");
+        }
+        LinkedHashSet<Long> distinctIds = distinctIds(ids);
+        return bulkResult(distinctIds, customerService.updateCustomers(distinctIds, customerPatch));
+    }
+
     @DeleteMapping("/{id}")
     @ResponseStatus(code = HttpStatus.NO_CONTENT)
     @Operation(summary = "Delete a customer", description = "Delete an existing customer")
     @ApiResponses(value = { @ApiResponse(responseCode = "204", description = "Customer deleted", content = @Content),
-            @ApiResponse(responseCode = "404", description = "Customer not found", content = @Content) })
+            @ApiResponse(responseCode = "404", description = "Customer not found", content = @Content),
+            @ApiResponse(responseCode = "409", description = "Customer kept being changed while it was deleted",
+                    content = @Content) })
     public void deleteCustomerById(@Parameter(description = "id of customer to be deleted") @PathVariable long id) {
-        LOGGER.info("DELETE /customers/{} - id={}", id, id);
-        if (customerService.getCustomerById(id).isEmpty()) {
+        LOGGER.debug("DELETE /customers/{} - id={}", id, id);
+        boolean deleted;
+        try {
+            deleted = customerService.deleteCustomerById(id);
+        } catch (OptimisticLockingFailureException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, String.format(MSG_CUSTOMER_MODIFIED, id), e);
+        }
+        if (!deleted) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, String.format(MSG_CUSTOMER_NOT_FOUND, id));
-        } else {
-            customerService.deleteCustomerById(id);
+        }
+    }
+
+    @DeleteMapping
+    @Operation(summary = "Delete customers in bulk",
+            description = "Delete all customers with the given ids in a single statement")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200",
+                    description = "Customers deleted",
+                    content = { @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = CustomerBulkResult.class)) }),
+            @ApiResponse(responseCode = "400", description = "Bad request", content = @Content),
+            @ApiResponse(responseCode = "404", description = "None of the customers found", content = @Content) })
+    public CustomerBulkResult deleteCustomers(
+            @Parameter(description = "comma-separated ids of customers to be deleted") @RequestParam List<Long> ids) {
+        LOGGER.debug("DELETE /customers - ids={}", ids);
+        LinkedHashSet<Long> distinctIds = distinctIds(ids);
+        return bulkResult(distinctIds, customerService.deleteCustomersByIds(distinctIds));
+    }
+
+    // The format is negotiated like that of the currency documents, so the Smile body has its own ETag and a cache
+    // never hands one encoding to a client that asked for the other
+    private static ResponseEntity<CustomerDto> customerResponse(CustomerDto customerDto, WireFormat format) {
+        return ResponseEntity.ok().contentType(format.getMediaType()).header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .eTag(format.etag(eTagOf(customerDto))).body(customerDto);
+    }
+
+    // The version is the ETag, so it changes exactly when the customer does
+    private static String eTagOf(CustomerDto customerDto) {
+        return "\"" + customerDto.getVersion() + "\"";
+    }
+
+    // Null for *, which matches any version. Both formats' ETags name the version. If-Match uses the strong
+    // comparison, so a weak or foreign ETag can never match and fails the precondition like a stale one.
+    private static Long expectedVersionOf(String ifMatch, long id) {
+        String eTag = WireFormat.jsonETag(ifMatch.trim());
+        if ("*".equals(eTag)) {
+            return null;
+        }
+        if (eTag.length() > 2 && eTag.startsWith("\"") && eTag.endsWith("\"")) {
+            try {
+                return Long.valueOf(eTag.substring(1, eTag.length() - 1));
+            } catch (NumberFormatException e) {
+                // Falls through to the failed precondition
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, String.format(MSG_CUSTOMER_MODIFIED, id));
+    }
+
+    private LinkedHashSet<Long> distinctIds(List<Long> ids) {
+        LinkedHashSet<Long> distinctIds = new LinkedHashSet<>(ids);
+        distinctIds.remove(null);
+        if (distinctIds.isEmpty() || distinctIds.size() > maxBulkIds) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "ids must hold between 1 and " + maxBulkIds + " customer ids");
+        }
+        return distinctIds;
+    }
+
+    // The affected-row count of the statement decides the status: 404 when it touched no customer at all
+    private static CustomerBulkResult bulkResult(LinkedHashSet<Long> ids, int affected) {
+        if (affected == 0) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, String.format(MSG_CUSTOMERS_NOT_FOUND, ids));
+        }
+        return new CustomerBulkResult(ids.size(), affected);
+    }
+
+    private static void writeLine(ObjectWriter writer, OutputStream outputStream, CustomerDto customerDto) {
+        try {
+            outputStream.write(writer.writeValueAsBytes(customerDto));
+            outputStream.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 }
@@ -0,0 +1,43 @@
+package net.huizha.examples.springboot.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.huizha.examples.springboot.model.currency.ExchangeResponse;
+import net.huizha.examples.springboot.service.ReactiveCurrencyClientService;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/currency-client/reactive")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Currency Controller", description = "Currency server and client controller")
+public class ReactiveCurrencyClientController {
+
+    private final ReactiveCurrencyClientService reactiveCurrencyClientService;
+
+    @GetMapping("currencies")
+    public Mono<ExchangeResponse> getCurrencyData() {
+        return reactiveCurrencyClientService.getCurrencyData()
+                .switchIfEmpty(Mono.error(() -> {
+                    LOGGER.info("ExchangeResponse=null, return \"{}\"", HttpStatus.NO_CONTENT);
+                    return new ResponseStatusException(HttpStatus.NO_CONTENT, "No data returned from currency server");
+                }))
+                .onErrorMap(WebClientResponseException.NotFound.class, notFoundEx -> {
+                    LOGGER.warn("Currency server returned 404: {}", notFoundEx.getMessage());
+                    return new ResponseStatusException(HttpStatus.NOT_FOUND, "Data not found on currency server");
+                })
+                .onErrorMap(e -> !(e instanceof ResponseStatusException), e -> {
+                    LOGGER.error("Error during GET request to currency server: {}", e.getMessage());
+                    return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                            "Currency client failed to fetch data");
+                });
+    }
+}
@@ -1,7 +1,5 @@
 package net.huizha.examples.springboot.model.currency;
 
-import java.util.List;
-
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -13,5 +11,8 @@ public class ExchangeResponseRecord {
 
     private String date;
 
-    private List<String> values;
+    /**
+     * One rate per entry of {@link ExchangeResponseData#getSearchList()}, in the same order.
+     */
+    private Rates values;
 }
@@ -0,0 +1,256 @@
+package net.huizha.examples.springboot.model.currency;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The records of an {@link ExchangeResponse} rearranged into columns for range queries: one sorted array of dates and
+ * one array of rates per currency pair, named by {@code data.head} (or {@code data.searchlist} when there is no head).
+ * <ul>
+ * <li>A date range is located by binary search, so a query never scans the records outside it.</li>
+ * <li>Each column also holds prefix sums and min/max segment trees, so the aggregates of any window cost O(log n)
+ * regardless of how many days it spans.</li>
+ * <li>Instances are immutable; a new series is built whenever the data changes.</li>
+ * </ul>
+ */
+public final class RateSeries {
+
+    private static final RateSeries EMPTY = new RateSeries(new int[0], Map.of());
+
+    private final int[] epochDays;
+
+    private final Map<String, Column> columns;
+
+    private RateSeries(int[] epochDays, Map<String, Column> columns) {
+        this.epochDays = epochDays;
+        this.columns = columns;
+    }
+
+    /**
+     * Builds the series from the records of {@code response}. Records without a valid date are skipped; when two
+     * records share a date, the one listed first wins.
+     */
+    public static RateSeries of(ExchangeResponse response) {
+        List<String> pairs = pairsOf(response.getData());
+        List<ExchangeResponseRecord> records = response.getRecords();
+        if (pairs.isEmpty() || records == null || records.isEmpty()) {
+            return EMPTY;
+        }
+        List<DatedRates> rows = new ArrayList<>(records.size());
+        for (ExchangeResponseRecord exchangeRecord : records) {
+            Integer epochDay = parseEpochDay(exchangeRecord.getDate());
+            if (epochDay != null && exchangeRecord.getValues() != null) {
+                rows.add(new DatedRates(epochDay, exchangeRecord.getValues()));
+            }
+        }
+        // Stable, so the first of several records with the same date comes first and the others are dropped below
+        rows.sort(Comparator.comparingInt(DatedRates::epochDay));
+        int[] epochDays = new int[rows.size()];
+        int size = 0;
+        for (DatedRates row : rows) {
+            if (size == 0 || epochDays[size - 1] != row.epochDay()) {
+                rows.set(size, row);
+                epochDays[size++] = row.epochDay();
+            }
+        }
+        if (size == 0) {
+            return EMPTY;
+        }
+        Map<String, Column> columns = new LinkedHashMap<>();
+        for (int pair = 0; pair < pairs.size(); pair++) {
+            double[] values = new double[size];
+            for (int i = 0; i < size; i++) {
+                Rates rates = rows.get(i).rates();
+                values[i] = pair < rates.size() ? rates.doubleValue(pair) : Double.NaN;
+            }
+            columns.putIfAbsent(pairs.get(pair), new Column(values));
+        }
+        return new RateSeries(Arrays.copyOf(epochDays, size), Collections.unmodifiableMap(columns));
+    }
+
+    private record DatedRates(int epochDay, Rates rates) {
+    }
+
+    private static List<String> pairsOf(ExchangeResponseData data) {
+        if (data == null) {
+            return List.of();
+        }
+        if (data.getHead() != null && !data.getHead().isEmpty()) {
+            return data.getHead();
+        }
+        return data.getSearchList() != null ? data.getSearchList() : List.of();
+    }
+
+    private static Integer parseEpochDay(String date) {
+        if (date == null) {
+            return null;
+        }
+        try {
+            return Math.toIntExact(LocalDate.parse(date).toEpochDay());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public Set<String> pairs() {
+        return columns.keySet();
+    }
+
+    public boolean contains(String pair) {
+        return columns.containsKey(pair);
+    }
+
+    public Optional<LocalDate> firstDate() {
+        return epochDays.length == 0 ? Optional.empty() : Optional.of(LocalDate.ofEpochDay(epochDays[0]));
+    }
+
+    public Optional<LocalDate> lastDate() {
+        return epochDays.length == 0 ? Optional.empty()
+                : Optional.of(LocalDate.ofEpochDay(epochDays[epochDays.length - 1]));
+    }
+
+    /**
+     * Splits {@code from} to {@code to} (both inclusive) into consecutive windows of {@code windowDays} days starting
+     * at {@code from} and aggregates the rates of {@code pair} in each. Windows without a rate are left out, so a
+     * one-day window returns the daily rates.
+     *
+     * @throws IllegalArgumentException if the pair is unknown or {@code windowDays} is less than 1
+     */
+    public List<RateWindow> query(String pair, LocalDate from, LocalDate to, int windowDays) {
+        Column column = columns.get(pair);
+        if (column == null) {
+            throw new IllegalArgumentException("Unknown currency pair: " + pair);
+        }
+        if (windowDays < 1) {
+            throw new IllegalArgumentException("Window must be at least one day: " + windowDays);
+        }
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        List<RateWindow> windows = new ArrayList<>();
+        int start = lowerBound(fromDay);
+        int end = lowerBound(toDay + 1);
+        while (start < end) {
+            // Jump straight to the window holding the next record, skipping windows without data
+            long windowStart = fromDay + (epochDays[start] - fromDay) / windowDays * windowDays;
+            long windowEnd = Math.min(windowStart + windowDays - 1, toDay);
+            int next = lowerBound(windowEnd + 1);
+            int count = column.count(start, next);
+            if (count > 0) {
+                windows.add(new RateWindow(LocalDate.ofEpochDay(windowStart), LocalDate.ofEpochDay(windowEnd), count,
+                        column.min(start, next), column.max(start, next), column.sum(start, next) / count));
+            }
+            start = next;
+        }
+        return windows;
+    }
+
+    // Index of the first date on or after epochDay
+    private int lowerBound(long epochDay) {
+        int low = 0;
+        int high = epochDays.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (epochDays[middle] < epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The rates of one pair with the structures that answer range aggregates over [from, to) index ranges. Missing
+     * rates are NaN and do not count.
+     */
+    private static final class Column {
+
+        // Below this many rows a sum is added up directly, which avoids the rounding error of subtracting prefix sums
+        private static final int DIRECT_SUM_ROWS = 64;
+
+        private final int size;
+
+        private final double[] values;
+
+        private final double[] prefixSums;
+
+        private final int[] prefixCounts;
+
+        // Bottom-up segment trees: leaves at [size, 2 * size), each inner node i combines 2i and 2i + 1
+        private final double[] minTree;
+
+        private final double[] maxTree;
+
+        Column(double[] values) {
+            this.size = values.length;
+            this.values = values;
+            prefixSums = new double[size + 1];
+            prefixCounts = new int[size + 1];
+            minTree = new double[2 * size];
+            maxTree = new double[2 * size];
+            for (int i = 0; i < size; i++) {
+                boolean present = !Double.isNaN(values[i]);
+                prefixSums[i + 1] = prefixSums[i] + (present ? values[i] : 0);
+                prefixCounts[i + 1] = prefixCounts[i] + (present ? 1 : 0);
+                minTree[size + i] = present ? values[i] : Double.POSITIVE_INFINITY;
+                maxTree[size + i] = present ? values[i] : Double.NEGATIVE_INFINITY;
+            }
+            for (int i = size - 1; i > 0; i--) {
+                minTree[i] = Math.min(minTree[2 * i], minTree[2 * i + 1]);
+                maxTree[i] = Math.max(maxTree[2 * i], maxTree[2 * i + 1]);
+            }
+        }
+
+        int count(int from, int to) {
+            return prefixCounts[to] - prefixCounts[from];
+        }
+
+        double sum(int from, int to) {
+            if (to - from > DIRECT_SUM_ROWS) {
+                return prefixSums[to] - prefixSums[from];
+            }
+            double sum = 0;
+            for (int i = from; i < to; i++) {
+                if (!Double.isNaN(values[i])) {
+                    sum += values[i];
+                }
+            }
+            return sum;
+        }
+
+        double min(int from, int to) {
+            double min = Double.POSITIVE_INFINITY;
+            for (int low = from + size, high = to + size; low < high; low >>= 1, high >>= 1) {
+                if ((low & 1) == 1) {
+                    min = Math.min(min, minTree[low++]);
+                }
+                if ((high & 1) == 1) {
+                    min = Math.min(min, minTree[--high]);
+                }
+            }
+            return min;
+        }
+
+        double max(int from, int to) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int low = from + size, high = to + size; low < high; low >>= 1, high >>= 1) {
+                if ((low & 1) == 1) {
+                    max = Math.max(max, maxTree[low++]);
+                }
+                if ((high & 1) == 1) {
+                    max = Math.max(max, maxTree[--high]);
+                }
+            }
+            return max;
+        }
+    }
+}
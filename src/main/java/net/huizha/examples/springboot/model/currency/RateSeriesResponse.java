@@ -0,0 +1,7 @@
+package net.huizha.examples.springboot.model.currency;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public record RateSeriesResponse(String pair, LocalDate from, LocalDate to, int window, List<RateWindow> windows) {
+}
@@ -0,0 +1,10 @@
+package net.huizha.examples.springboot.model.currency;
+
+import java.time.LocalDate;
+
+/**
+ * The aggregated rates of one currency pair from {@code from} to {@code to}, both inclusive; {@code count} is the
+ * number of days with a rate.
+ */
+public record RateWindow(LocalDate from, LocalDate to, int count, double min, double max, double avg) {
+}
@@ -0,0 +1,243 @@
+package net.huizha.examples.springboot.model.currency;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * The rates of one {@link ExchangeResponseRecord}, in the column order of {@link ExchangeResponseData#getSearchList()}.
+ * Each rate is a fixed-point decimal held as an unscaled {@code long} plus its number of fraction digits, so
+ * {@code "7.9620"} is stored as 79620 with scale 4. On the wire the rates stay an array of decimal strings; a rate
+ * written in canonical form (no redundant leading zeros, no exponent) is written back byte for byte. A JSON
+ * {@code null} or empty string marks a missing rate.
+ * <p>
+ * The accessors are index based and do not allocate, so callers can aggregate over columns without boxing.
+ */
+@JsonSerialize(using = Rates.Serializer.class)
+@JsonDeserialize(using = Rates.Deserializer.class)
+public final class Rates {
+
+    private static final byte MISSING_NULL = -1;
+
+    private static final byte MISSING_EMPTY = -2;
+
+    // Beyond 18 digits the unscaled value no longer fits a long
+    private static final int MAX_DIGITS = 18;
+
+    private static final double[] POWERS_OF_TEN = new double[MAX_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final long[] unscaledValues;
+
+    private final byte[] scales;
+
+    private Rates(long[] unscaledValues, byte[] scales) {
+        this.unscaledValues = unscaledValues;
+        this.scales = scales;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a value is not a plain decimal number
+     */
+    public static Rates of(String... values) {
+        long[] unscaledValues = new long[values.length];
+        byte[] scales = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i];
+            if (value == null) {
+                scales[i] = MISSING_NULL;
+            } else if (!parse(value.toCharArray(), 0, value.length(), unscaledValues, scales, i)) {
+                throw new IllegalArgumentException("Not a decimal rate: \"" + value + "\"");
+            }
+        }
+        return new Rates(unscaledValues, scales);
+    }
+
+    public int size() {
+        return scales.length;
+    }
+
+    public boolean isPresent(int index) {
+        return scales[index] >= 0;
+    }
+
+    public long unscaledValue(int index) {
+        return unscaledValues[index];
+    }
+
+    public int scale(int index) {
+        return scales[index];
+    }
+
+    /**
+     * @return the rate as the nearest double, or {@code NaN} if it is missing
+     */
+    public double doubleValue(int index) {
+        return isPresent(index) ? unscaledValues[index] / POWERS_OF_TEN[scales[index]] : Double.NaN;
+    }
+
+    /**
+     * @return the exact rate, or {@code null} if it is missing
+     */
+    public BigDecimal decimalValue(int index) {
+        return isPresent(index) ? BigDecimal.valueOf(unscaledValues[index], scales[index]) : null;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof Rates rates && Arrays.equals(unscaledValues, rates.unscaledValues)
+                && Arrays.equals(scales, rates.scales);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(unscaledValues) + Arrays.hashCode(scales);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        char[] buffer = new char[MAX_DIGITS + 3];
+        for (int i = 0; i < size(); i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            if (scales[i] == MISSING_NULL) {
+                builder.append("null");
+            } else {
+                builder.append(buffer, 0, format(i, buffer));
+            }
+        }
+        return builder.append(']').toString();
+    }
+
+    // Writes the rate at index into buffer and returns its length; a missing rate has length 0
+    private int format(int index, char[] buffer) {
+        int scale = scales[index];
+        if (scale < 0) {
+            return 0;
+        }
+        long value = unscaledValues[index];
+        boolean negative = value < 0;
+        // Negating Long.MIN_VALUE overflows, but it has 19 digits and is never parsed
+        long remaining = Math.abs(value);
+        int position = buffer.length;
+        int digits = 0;
+        do {
+            if (digits == scale && scale > 0) {
+                buffer[--position] = '.';
+            }
+            buffer[--position] = (char) ('0' + remaining % 10);
+            remaining /= 10;
+            digits++;
+        } while (remaining > 0 || digits <= scale);
+        if (negative) {
+            buffer[--position] = '-';
+        }
+        int length = buffer.length - position;
+        System.arraycopy(buffer, position, buffer, 0, length);
+        return length;
+    }
+
+    // Parses a plain decimal into unscaledValues[index] and scales[index]
+    private static boolean parse(char[] text, int offset, int length, long[] unscaledValues, byte[] scales,
+            int index) {
+        if (length == 0) {
+            scales[index] = MISSING_EMPTY;
+            return true;
+        }
+        int end = offset + length;
+        int position = offset;
+        boolean negative = text[position] == '-';
+        if (negative) {
+            position++;
+        }
+        long value = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; position < end; position++) {
+            char c = text[position];
+            if (c == '.' && scale < 0) {
+                scale = 0;
+            } else if (c >= '0' && c <= '9' && digits < MAX_DIGITS) {
+                value = value * 10 + (c - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else {
+                return false;
+            }
+        }
+        if (digits == 0 || scale == 0) {
+            return false;
+        }
+        unscaledValues[index] = negative ? -value : value;
+        scales[index] = (byte) Math.max(scale, 0);
+        return true;
+    }
+
+    static class Serializer extends JsonSerializer<Rates> {
+
+        @Override
+        public void serialize(Rates rates, JsonGenerator generator, SerializerProvider serializers)
+                throws IOException {
+            char[] buffer = new char[MAX_DIGITS + 3];
+            generator.writeStartArray(rates, rates.size());
+            for (int i = 0; i < rates.size(); i++) {
+                if (rates.scales[i] == MISSING_NULL) {
+                    generator.writeNull();
+                } else {
+                    generator.writeString(buffer, 0, rates.format(i, buffer));
+                }
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    static class Deserializer extends JsonDeserializer<Rates> {
+
+        @Override
+        public Rates deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (!parser.isExpectedStartArrayToken()) {
+                return (Rates) context.handleUnexpectedToken(Rates.class, parser);
+            }
+            long[] unscaledValues = new long[32];
+            byte[] scales = new byte[32];
+            int size = 0;
+            for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                if (size == scales.length) {
+                    unscaledValues = Arrays.copyOf(unscaledValues, size * 2);
+                    scales = Arrays.copyOf(scales, size * 2);
+                }
+                if (token == JsonToken.VALUE_NULL) {
+                    scales[size] = MISSING_NULL;
+                } else if (token != JsonToken.VALUE_STRING) {
+                    return (Rates) context.handleUnexpectedToken(Rates.class, parser);
+                } else if (!parse(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength(),
+                        unscaledValues, scales, size)) {
+                    return (Rates) context.handleWeirdStringValue(Rates.class, parser.getText(),
+                            "not a decimal rate");
+                }
+                size++;
+            }
+            return new Rates(Arrays.copyOf(unscaledValues, size), Arrays.copyOf(scales, size));
+        }
+    }
+}
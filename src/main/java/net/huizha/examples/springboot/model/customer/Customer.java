@@ -1,24 +1,35 @@
 package net.huizha.examples.springboot.model.customer;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "customer")
 @Data
 @NoArgsConstructor
 @RequiredArgsConstructor
 public class Customer {
 
+    // A pooled sequence (unlike IDENTITY) lets Hibernate batch inserts and hand out ids without a round trip
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_seq")
+    @SequenceGenerator(name = "customer_seq", sequenceName = "customer_seq", allocationSize = 50)
     private Long id;
 
     @NonNull
@@ -30,4 +41,10 @@ public class Customer {
     @NotNull
     @NotBlank
     private String lastName;
+
+    // Checked and incremented by every write, so an update based on a stale read fails instead of overwriting;
+    // concurrency metadata, not part of the customer's value
+    @Version
+    @EqualsAndHashCode.Exclude
+    private Long version;
 }
@@ -0,0 +1,29 @@
+package net.huizha.examples.springboot.model.customer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerBatchResult {
+
+    private int created;
+
+    private List<Failure> failures = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Failure {
+
+        // Zero-based position of the rejected row in the request
+        private int index;
+
+        private String message;
+    }
+}
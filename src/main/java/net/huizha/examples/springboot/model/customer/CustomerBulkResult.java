@@ -0,0 +1,17 @@
+package net.huizha.examples.springboot.model.customer;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerBulkResult {
+
+    // Distinct ids in the request
+    private int requested;
+
+    // Customers the statement changed; ids without a customer are not counted
+    private int affected;
+}
@@ -1,12 +1,18 @@
 package net.huizha.examples.springboot.model.customer;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import jakarta.validation.constraints.NotBlank;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 @Data
 @Builder
+// Public for the constructor expressions of the DTO queries in CustomerRepository
+@AllArgsConstructor
 public class CustomerDto {
 
     private Long id;
@@ -16,4 +22,9 @@ public class CustomerDto {
 
     @NotBlank
     private String lastName;
+
+    // Travels as the ETag and If-Match headers instead of in the body
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private Long version;
 }
@@ -0,0 +1,11 @@
+package net.huizha.examples.springboot.model.customer;
+
+// Projection of the names of one customer, read before a bulk write so the name index can follow it
+public interface CustomerName {
+
+    Long getId();
+
+    String getFirstName();
+
+    String getLastName();
+}
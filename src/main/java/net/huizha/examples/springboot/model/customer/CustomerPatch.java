@@ -0,0 +1,20 @@
+package net.huizha.examples.springboot.model.customer;
+
+import jakarta.validation.constraints.Pattern;
+
+import lombok.Builder;
+import lombok.Data;
+
+// Names to set on several customers at once; a null name is left unchanged
+@Data
+@Builder
+public class CustomerPatch {
+
+    private static final String NOT_BLANK = "(?s).*\\S.*";
+
+    @Pattern(regexp = NOT_BLANK, message = "must not be blank")
+    private String firstName;
+
+    @Pattern(regexp = NOT_BLANK, message = "must not be blank")
+    private String lastName;
+}
@@ -0,0 +1,9 @@
+package net.huizha.examples.springboot.model.customer;
+
+// Projection of a customer name and the number of customers that have it
+public interface NameCount {
+
+    String getName();
+
+    long getCustomers();
+}
@@ -1,29 +1,97 @@
 package net.huizha.examples.springboot.repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.validation.annotation.Validated;
 
+import jakarta.persistence.QueryHint;
 import jakarta.validation.constraints.NotBlank;
 import net.huizha.examples.springboot.model.customer.Customer;
+import net.huizha.examples.springboot.model.customer.CustomerDto;
+import net.huizha.examples.springboot.model.customer.CustomerName;
+import net.huizha.examples.springboot.model.customer.NameCount;
 
 @Repository
 @Validated
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
 
+    // Reads rows straight into CustomerDto: no managed entities, snapshots or second-level cache entries are created
+    String SELECT_CUSTOMER_DTO = "SELECT new net.huizha.examples.springboot.model.customer.CustomerDto("
+            + "c.id, c.firstName, c.lastName, c.version) FROM Customer c ";
+
+    // The name finders are served from the query cache; any write to customer invalidates their results
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Customer> findByFirstName(@NotBlank String firstName);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Customer> findByLastNameOrderByFirstNameAsc(@NotBlank String lastName);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Customer> findByFirstNameStartingWith(@NotBlank String prefix);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     @Query(value = "SELECT c from Customer c WHERE c.firstName = :firstName")
     List<Customer> findByFirstNameByDirectQuery(@Param("firstName") @NotBlank String firstName);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     @Query(value = "SELECT c from Customer c WHERE c.firstName LIKE :prefix%")
     List<Customer> findByFirstNameStartingWithByDirectQuery(@Param("prefix") @NotBlank String prefix);
+
+    // Name suggestions when the in-memory name index cannot serve them
+    @Query(value = "SELECT DISTINCT c.firstName FROM Customer c WHERE c.firstName LIKE :prefix% ORDER BY c.firstName")
+    List<String> findFirstNamesStartingWith(@Param("prefix") @NotBlank String prefix, Limit limit);
+
+    @Query(value = "SELECT DISTINCT c.lastName FROM Customer c WHERE c.lastName LIKE :prefix% ORDER BY c.lastName")
+    List<String> findLastNamesStartingWith(@Param("prefix") @NotBlank String prefix, Limit limit);
+
+    // Seeds the in-memory name index
+    @Query(value = "SELECT c.firstName AS name, COUNT(c) AS customers FROM Customer c GROUP BY c.firstName")
+    List<NameCount> countByFirstName();
+
+    @Query(value = "SELECT c.lastName AS name, COUNT(c) AS customers FROM Customer c GROUP BY c.lastName")
+    List<NameCount> countByLastName();
+
+    // The entity read of a keyset page the service used before findDtosByIdGreaterThan. Not used by the application;
+    // kept as the baseline CustomerReadPathBenchmark compares the DTO projection with.
+    List<Customer> findByIdGreaterThanOrderByIdAsc(long afterId, Limit limit);
+
+    // DTO projections of the list reads. Keyset pagination seeks past the last seen id instead of using an OFFSET.
+    @Query(value = SELECT_CUSTOMER_DTO + "ORDER BY c.id")
+    List<CustomerDto> findAllDtos();
+
+    @Query(value = SELECT_CUSTOMER_DTO + "WHERE c.id > :afterId ORDER BY c.id")
+    List<CustomerDto> findDtosByIdGreaterThan(@Param("afterId") long afterId, Limit limit);
+
+    // Must be consumed inside a transaction and closed by the caller
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(value = SELECT_CUSTOMER_DTO + "ORDER BY c.id")
+    Stream<CustomerDto> streamAllDtos();
+
+    @Query(value = "SELECT c.id AS id, c.firstName AS firstName, c.lastName AS lastName FROM Customer c "
+            + "WHERE c.id IN :ids")
+    List<CustomerName> findNamesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Bulk writes: one statement however many ids are given, returning the number of rows changed. They bypass the
+    // persistence context, so Hibernate evicts the whole customer cache region and the cached finder results.
+    @Modifying
+    @Query(value = "DELETE FROM Customer c WHERE c.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    // A null name keeps the current one. The version is incremented by hand, as JPQL updates leave it alone, so
+    // concurrent optimistic writers of the same customers fail instead of overwriting the change.
+    @Modifying
+    @Query(value = "UPDATE Customer c SET c.firstName = COALESCE(:firstName, c.firstName), "
+            + "c.lastName = COALESCE(:lastName, c.lastName), c.version = c.version + 1 WHERE c.id IN :ids")
+    int updateNamesByIdIn(@Param("ids") Collection<Long> ids, @Param("firstName") String firstName,
+            @Param("lastName") String lastName);
 }
@@ -0,0 +1,249 @@
+package net.huizha.examples.springboot.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import net.huizha.examples.springboot.model.currency.ExchangeResponse;
+import net.huizha.examples.springboot.model.currency.ExchangeResponseRecord;
+import net.huizha.examples.springboot.util.JsonCodecs;
+import net.huizha.examples.springboot.util.RefreshAheadCache;
+import net.huizha.examples.springboot.util.ResponseCompression;
+import net.huizha.examples.springboot.util.UpstreamGuard;
+import net.huizha.examples.springboot.util.WireFormat;
+
+/**
+ * Fetches currency data from the currency server through a {@link RefreshAheadCache}. Reloads are conditional
+ * requests, so an unchanged upstream answers 304 and the cached body is kept. Upstream failures other than 404 are
+ * answered with the stale body when there is one.
+ * <p>
+ * The data is requested in pages of {@code currency.client.page-size} records. When the first page reports more
+ * pages, the rest are fetched concurrently, at most {@code currency.client.page-parallelism} at a time, and their
+ * records appended in page order.
+ * <p>
+ * With {@code currency.client.prefer-smile} the pages are requested in Smile, with JSON as the fallback for servers
+ * that do not offer it, and each page is parsed in the format it arrived in.
+ * <p>
+ * Every upstream request goes through the {@link UpstreamGuard}: while the circuit is open, or too many requests are
+ * in flight, a reload fails at once and the stale body is served when there is one.
+ */
+@Service
+@Slf4j
+public class CurrencyClientService {
+
+    /**
+     * Last good upstream response, serialized and gzipped once so cache hits are served without touching Jackson or
+     * the compressor, with its validators. The gzip is {@code null} when the JSON is too small to compress.
+     */
+    public record CachedResponse(ExchangeResponse body, byte[] json, byte[] gzip, String etag, long lastModified) {
+    }
+
+    private static final String CACHE_REQUESTS_METRIC = "currency.client.cache.requests";
+
+    private static final String CACHE_LOADS_METRIC = "currency.client.cache.loads";
+
+    private static final List<MediaType> SMILE_OR_JSON = List.of(WireFormat.SMILE.getMediaType(),
+            new MediaType(MediaType.APPLICATION_JSON, Map.of("q", "0.9")));
+
+    private static final String PAGE_QUERY = "?pageNum={pageNum}&pageSize={pageSize}";
+
+    private final RestTemplate restTemplate;
+
+    private final UpstreamGuard upstreamGuard;
+
+    private final JsonCodecs jsonCodecs;
+
+    private final ResponseCompression responseCompression;
+
+    private final String url;
+
+    private final Executor executor;
+
+    private final int pageSize;
+
+    private final int pageParallelism;
+
+    private final List<MediaType> accept;
+
+    private final RefreshAheadCache<CachedResponse> cache;
+
+    public CurrencyClientService(RestTemplate restTemplate, UpstreamGuard currencyUpstreamGuard, JsonCodecs jsonCodecs,
+            ResponseCompression responseCompression,
+            @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor executor,
+            MeterRegistry meterRegistry,
+            @Value("${api.base-url:http://localhost:8080/api/v1}") String baseUrl,
+            @Value("${currency.client.cache.ttl:PT60S}") Duration ttl,
+            @Value("${currency.client.cache.refresh-ahead:PT10S}") Duration refreshAhead,
+            @Value("${currency.client.page-size:100}") int pageSize,
+            @Value("${currency.client.page-parallelism:4}") int pageParallelism,
+            @Value("${currency.client.prefer-smile:false}") boolean preferSmile) {
+        this.restTemplate = restTemplate;
+        this.upstreamGuard = currencyUpstreamGuard;
+        this.jsonCodecs = jsonCodecs;
+        this.responseCompression = responseCompression;
+        this.url = baseUrl + "/currency-server/currencies";
+        this.executor = executor;
+        this.pageSize = pageSize;
+        this.pageParallelism = Math.max(1, pageParallelism);
+        this.accept = preferSmile ? SMILE_OR_JSON : List.of(MediaType.APPLICATION_JSON);
+        this.cache = new RefreshAheadCache<>(this::fetch, ttl, refreshAhead, executor,
+                e -> !(e instanceof HttpClientErrorException.NotFound));
+        FunctionCounter.builder(CACHE_REQUESTS_METRIC, cache, RefreshAheadCache::hitCount).tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder(CACHE_REQUESTS_METRIC, cache, RefreshAheadCache::missCount).tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder(CACHE_REQUESTS_METRIC, cache, RefreshAheadCache::staleHitCount).tag("result", "stale")
+                .register(meterRegistry);
+        FunctionCounter.builder(CACHE_LOADS_METRIC, cache, RefreshAheadCache::loadCount).tag("outcome", "all")
+                .register(meterRegistry);
+        FunctionCounter.builder(CACHE_LOADS_METRIC, cache, RefreshAheadCache::loadFailureCount)
+                .tag("outcome", "failure").register(meterRegistry);
+    }
+
+    /**
+     * @return the currency data, or empty when the currency server returned no body
+     * @throws org.springframework.web.client.RestClientException when the upstream call fails and nothing usable is
+     *             cached
+     */
+    public Optional<CachedResponse> getCurrencyData() {
+        return Optional.ofNullable(cache.get());
+    }
+
+    private CachedResponse fetch(CachedResponse previous) {
+        ResponseEntity<byte[]> response = fetchPage(1, conditionalHeaders(previous));
+        if (response.getStatusCode() == HttpStatus.NOT_MODIFIED && previous != null) {
+            LOGGER.debug("Currency server returned 304, reusing ETag={}", previous.etag());
+            return previous;
+        }
+        if (response.getBody() == null) {
+            return null;
+        }
+        ExchangeResponse body = parse(response);
+        String etag = response.getHeaders().getETag();
+        int pageTotal = body.getData() != null ? body.getData().getPageTotal() : 1;
+        if (pageTotal > 1) {
+            List<ExchangeResponseRecord> records = new ArrayList<>();
+            if (body.getRecords() != null) {
+                records.addAll(body.getRecords());
+            }
+            for (ExchangeResponse page : fetchRemainingPages(pageTotal, etag)) {
+                records.addAll(page.getRecords());
+            }
+            // The merged document is a single page holding every record
+            body = new ExchangeResponse(body.getHead(),
+                    body.getData().toBuilder().pageNum(1).pageTotal(1).pageSize(records.size()).build(), records);
+        }
+        // Formatted only when DEBUG is enabled; the document can hold thousands of records
+        LOGGER.debug("Fetched currency data: {}", body);
+        try {
+            byte[] json = jsonCodecs.getExchangeResponseWriter().writeValueAsBytes(body);
+            return new CachedResponse(body, json, responseCompression.precompress(json), etag,
+                    response.getHeaders().getLastModified());
+        } catch (IOException e) {
+            throw new RestClientException("Failed to serialize currency data from " + url, e);
+        }
+    }
+
+    // Pages 2 to pageTotal in order. The calling thread fetches pages alongside the helpers, so the fetch makes
+    // progress even when the executor is busy.
+    private List<ExchangeResponse> fetchRemainingPages(int pageTotal, String etag) {
+        ExchangeResponse[] pages = new ExchangeResponse[pageTotal - 1];
+        AtomicInteger nextPage = new AtomicInteger(2);
+        Runnable worker = () -> {
+            for (int pageNum = nextPage.getAndIncrement(); pageNum <= pageTotal; pageNum = nextPage.getAndIncrement()) {
+                try {
+                    pages[pageNum - 2] = fetchRemainingPage(pageNum, etag);
+                } catch (RuntimeException e) {
+                    // Stop the other workers from starting pages whose result will be discarded
+                    nextPage.set(pageTotal + 1);
+                    throw e;
+                }
+            }
+        };
+        List<CompletableFuture<Void>> helpers = new ArrayList<>();
+        for (int i = 1; i < Math.min(pageParallelism, pageTotal - 1); i++) {
+            helpers.add(CompletableFuture.runAsync(worker, executor));
+        }
+        worker.run();
+        for (CompletableFuture<Void> helper : helpers) {
+            try {
+                helper.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        return Arrays.asList(pages);
+    }
+
+    private ExchangeResponse fetchRemainingPage(int pageNum, String etag) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(accept);
+        ResponseEntity<byte[]> response = fetchPage(pageNum, headers);
+        String pageEtag = response.getHeaders().getETag();
+        // Pages of at least the server's min-response-size come gzipped under the -gzip variant of the data's ETag
+        if (etag != null && pageEtag != null
+                && !ResponseCompression.identityETag(etag).equals(ResponseCompression.identityETag(pageEtag))) {
+            // Mixing pages of two versions could duplicate or lose records; the cache retries on the next read
+            throw new RestClientException("Currency data changed while fetching page " + pageNum + " from " + url);
+        }
+        if (response.getBody() == null) {
+            throw new RestClientException("No body for page " + pageNum + " from " + url);
+        }
+        ExchangeResponse page = parse(response);
+        return page.getRecords() != null ? page : new ExchangeResponse(page.getHead(), page.getData(), List.of());
+    }
+
+    private ResponseEntity<byte[]> fetchPage(int pageNum, HttpHeaders headers) {
+        // Fetched as bytes and parsed with the pre-built reader instead of a message converter
+        return upstreamGuard.call(() -> restTemplate.exchange(url + PAGE_QUERY, HttpMethod.GET,
+                new HttpEntity<>(headers), byte[].class, pageNum, pageSize));
+    }
+
+    private ExchangeResponse parse(ResponseEntity<byte[]> response) {
+        try {
+            return jsonCodecs.getExchangeResponseReader(WireFormat.of(response.getHeaders().getContentType()))
+                    .readValue(response.getBody());
+        } catch (IOException e) {
+            throw new RestClientException("Malformed currency data from " + url, e);
+        }
+    }
+
+    private HttpHeaders conditionalHeaders(CachedResponse previous) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(accept);
+        if (previous != null) {
+            if (previous.etag() != null) {
+                headers.setIfNoneMatch(previous.etag());
+            }
+            if (previous.lastModified() > 0) {
+                headers.setIfModifiedSince(previous.lastModified());
+            }
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,164 @@
+package net.huizha.examples.springboot.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import net.huizha.examples.springboot.model.currency.ExchangeResponse;
+import net.huizha.examples.springboot.model.currency.ExchangeResponseData;
+import net.huizha.examples.springboot.model.currency.ExchangeResponseRecord;
+import net.huizha.examples.springboot.model.currency.RateSeries;
+import net.huizha.examples.springboot.util.JsonCodecs;
+import net.huizha.examples.springboot.util.ResponseCompression;
+import net.huizha.examples.springboot.util.WireFormat;
+
+/**
+ * Holds the currency data parsed once into a snapshot together with its serialized and gzipped JSON and its Smile
+ * encoding. When the data location is a file, its modification time is polled and a changed file is swapped in as a
+ * new snapshot. Readers only do a volatile read; a failed reload keeps the previous snapshot.
+ */
+@Component
+@Slf4j
+public class CurrencyDataProvider {
+
+    /**
+     * One version of the currency data. The response must be treated as read-only, since it is shared by all readers.
+     * The strong ETag is derived from the JSON bytes and lastModified is the data timestamp ({@code head.ts}). The gzip
+     * is {@code null} when the JSON is too small to compress. The rate series holds the same records in columns for
+     * range queries. The encoded pages are filled by {@link CurrencyDataProvider#getPage} as pages are read.
+     */
+    public record Snapshot(ExchangeResponse response, byte[] json, byte[] gzip, byte[] smile, String etag,
+            long lastModified, RateSeries rateSeries, Map<PageKey, EncodedPage> encodedPages) {
+
+        /**
+         * Returns page {@code pageNum} (from 1) of the records, with {@code data.pageNum}, {@code pageSize},
+         * {@code pageTotal} and {@code total} describing the paging. A page past the last one has no records.
+         */
+        public ExchangeResponse page(int pageNum, int pageSize) {
+            List<ExchangeResponseRecord> records = response.getRecords() != null ? response.getRecords() : List.of();
+            int from = (int) Math.min((long) (pageNum - 1) * pageSize, records.size());
+            int to = (int) Math.min((long) from + pageSize, records.size());
+            ExchangeResponseData data = (response.getData() != null ? response.getData().toBuilder()
+                    : ExchangeResponseData.builder()).total(records.size()).pageNum(pageNum).pageSize(pageSize)
+                    .pageTotal(Math.max(1, Math.ceilDiv(records.size(), pageSize))).build();
+            return new ExchangeResponse(response.getHead(), data, records.subList(from, to));
+        }
+    }
+
+    /**
+     * A page of the currency data in one format; the gzip is {@code null} for Smile and for bodies too small to
+     * compress.
+     */
+    public record EncodedPage(byte[] body, byte[] gzip) {
+    }
+
+    public record PageKey(int pageNum, int pageSize, WireFormat format) {
+    }
+
+    private final JsonCodecs jsonCodecs;
+
+    private final ResponseCompression responseCompression;
+
+    private final Resource resource;
+
+    private final int pageCacheSize;
+
+    private volatile Snapshot snapshot;
+
+    // Modification time of the last load attempt, so a broken file is not parsed again on every poll
+    private long lastAttemptedModified;
+
+    public CurrencyDataProvider(JsonCodecs jsonCodecs, ResponseCompression responseCompression,
+            ResourceLoader resourceLoader,
+            @Value("${currency.data.location:classpath:json/currency.json}") String location,
+            @Value("${currency.server.page.cache-size:256}") int pageCacheSize) {
+        this.jsonCodecs = jsonCodecs;
+        this.responseCompression = responseCompression;
+        this.resource = resourceLoader.getResource(location);
+        this.pageCacheSize = pageCacheSize;
+    }
+
+    @PostConstruct
+    void loadInitialSnapshot() {
+        try {
+            snapshot = load();
+            LOGGER.info("Loaded currency data from {}", resource);
+        } catch (IOException e) {
+            LOGGER.warn("Currency data not available from {}: {}", resource, e.getMessage());
+        }
+    }
+
+    public Optional<Snapshot> getSnapshot() {
+        return Optional.ofNullable(snapshot);
+    }
+
+    /**
+     * Returns page {@code pageNum} of {@code snapshot} encoded in {@code format}, and gzipped for JSON. Pages are
+     * encoded on first read and kept with the snapshot, up to {@code currency.server.page.cache-size} of them, so
+     * clients paging through a version reuse the bytes. Pages past the last one are encoded on every read, so arbitrary
+     * page numbers do not grow the snapshot.
+     */
+    public EncodedPage getPage(Snapshot snapshot, int pageNum, int pageSize, WireFormat format)
+            throws JsonProcessingException {
+        PageKey key = new PageKey(pageNum, pageSize, format);
+        EncodedPage cached = snapshot.encodedPages().get(key);
+        if (cached != null) {
+            return cached;
+        }
+        ExchangeResponse page = snapshot.page(pageNum, pageSize);
+        byte[] body = jsonCodecs.getExchangeResponseWriter(format).writeValueAsBytes(page);
+        EncodedPage encoded = new EncodedPage(body,
+                format == WireFormat.JSON ? responseCompression.precompress(body) : null);
+        // The size check races with other readers, so the cache may end up a few pages over its size
+        if (pageNum <= page.getData().getPageTotal() && snapshot.encodedPages().size() < pageCacheSize) {
+            cached = snapshot.encodedPages().putIfAbsent(key, encoded);
+        }
+        return cached != null ? cached : encoded;
+    }
+
+    @Scheduled(initialDelayString = "${currency.data.reload-interval:PT5S}",
+            fixedDelayString = "${currency.data.reload-interval:PT5S}")
+    public void reloadIfModified() {
+        if (!resource.isFile()) {
+            // Classpath entries inside a jar cannot change at runtime
+            return;
+        }
+        try {
+            if (resource.lastModified() != lastAttemptedModified) {
+                snapshot = load();
+                LOGGER.info("Reloaded currency data from {}", resource);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to reload currency data from {}, keeping the previous version: {}", resource,
+                    e.getMessage());
+        }
+    }
+
+    private Snapshot load() throws IOException {
+        long lastModified = resource.isFile() ? resource.lastModified() : 0L;
+        lastAttemptedModified = lastModified;
+        try (InputStream inputStream = resource.getInputStream()) {
+            ExchangeResponse response = jsonCodecs.getExchangeResponseReader().readValue(inputStream);
+            byte[] json = jsonCodecs.getExchangeResponseWriter().writeValueAsBytes(response);
+            String etag = "\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+            long timestamp = response.getHead() != null ? response.getHead().getTimestamp() : 0L;
+            byte[] smile = jsonCodecs.getExchangeResponseWriter(WireFormat.SMILE).writeValueAsBytes(response);
+            return new Snapshot(response, json, responseCompression.precompress(json), smile, etag,
+                    timestamp > 0 ? timestamp : lastModified, RateSeries.of(response), new ConcurrentHashMap<>());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package net.huizha.examples.springboot.service;
+
+import net.huizha.examples.springboot.model.customer.Customer;
+import net.huizha.examples.springboot.model.customer.CustomerDto;
+
+/**
+ * Maps between the {@link Customer} entity and the {@link CustomerDto} the service hands out. Holds no state, so it
+ * can be benchmarked on its own.
+ */
+final class CustomerMapper {
+
+    private CustomerMapper() {
+    }
+
+    static CustomerDto toCustomerDto(Customer customer) {
+        return CustomerDto.builder().id(customer.getId()).firstName(customer.getFirstName())
+                .lastName(customer.getLastName()).version(customer.getVersion()).build();
+    }
+
+    // The id and version are assigned by JPA
+    static Customer toCustomer(CustomerDto customerDto) {
+        return new Customer(customerDto.getFirstName(), customerDto.getLastName());
+    }
+}
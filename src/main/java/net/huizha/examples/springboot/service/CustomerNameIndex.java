@@ -0,0 +1,167 @@
+package net.huizha.examples.springboot.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import lombok.extern.slf4j.Slf4j;
+import net.huizha.examples.springboot.model.customer.Customer;
+import net.huizha.examples.springboot.model.customer.NameCount;
+import net.huizha.examples.springboot.repository.CustomerRepository;
+import net.huizha.examples.springboot.util.PrefixIndex;
+
+/**
+ * Keeps the first and last names of all customers in a {@link PrefixIndex} for type-ahead suggestions. The index is
+ * loaded once the application is ready and then follows the changes {@link CustomerService} commits. It answers only
+ * while it is complete: before loading has finished, when disabled, or after a change would take it over
+ * {@code customer.name-index.max-size}, {@link #suggest} returns empty and callers fall back to the database.
+ */
+@Component
+@Slf4j
+public class CustomerNameIndex {
+
+    private enum State {
+        DISABLED, LOADING, READY
+    }
+
+    private final CustomerRepository customerRepository;
+
+    private final PrefixIndex index;
+
+    private final DataSize maxSize;
+
+    private final Map<String, Integer> changesWhileLoading = new HashMap<>();
+
+    private volatile State state;
+
+    public CustomerNameIndex(CustomerRepository customerRepository,
+            @Value("${customer.name-index.enabled:true}") boolean enabled,
+            @Value("${customer.name-index.max-size:16MB}") DataSize maxSize) {
+        this.customerRepository = customerRepository;
+        this.index = new PrefixIndex(maxSize.toBytes());
+        this.maxSize = maxSize;
+        this.state = enabled ? State.LOADING : State.DISABLED;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (state != State.LOADING) {
+            return;
+        }
+        long start = System.nanoTime();
+        Map<String, Integer> counts = new HashMap<>();
+        addCounts(counts, customerRepository.countByFirstName());
+        addCounts(counts, customerRepository.countByLastName());
+        synchronized (changesWhileLoading) {
+            changesWhileLoading.forEach((name, delta) -> counts.merge(name, delta, Integer::sum));
+            changesWhileLoading.clear();
+            if (!apply(counts)) {
+                return;
+            }
+            state = State.READY;
+        }
+        LOGGER.info("Loaded {} customer names ({} bytes) in {} ms", index.size(), index.estimatedBytes(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static void addCounts(Map<String, Integer> counts, List<NameCount> nameCounts) {
+        for (NameCount nameCount : nameCounts) {
+            counts.merge(nameCount.getName(), Math.toIntExact(nameCount.getCustomers()), Integer::sum);
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} names starting with {@code prefix}, or empty if the index cannot answer.
+     */
+    public Optional<List<String>> suggest(String prefix, int limit) {
+        return state == State.READY ? Optional.of(index.suggest(prefix, limit)) : Optional.empty();
+    }
+
+    /**
+     * Whether {@link #record} uses the changes it is given; when it does not, callers can skip collecting them.
+     */
+    public boolean isTracking() {
+        return state != State.DISABLED;
+    }
+
+    /**
+     * Applies the changes once the current transaction commits, or immediately outside a transaction.
+     */
+    public void record(Changes changes) {
+        if (state == State.DISABLED || changes.deltas.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyCommitted(changes.deltas);
+                }
+            });
+        } else {
+            applyCommitted(changes.deltas);
+        }
+    }
+
+    private void applyCommitted(Map<String, Integer> deltas) {
+        if (state == State.READY) {
+            apply(deltas);
+            return;
+        }
+        synchronized (changesWhileLoading) {
+            if (state == State.LOADING) {
+                deltas.forEach((name, delta) -> changesWhileLoading.merge(name, delta, Integer::sum));
+            } else if (state == State.READY) {
+                apply(deltas);
+            }
+        }
+    }
+
+    private boolean apply(Map<String, Integer> deltas) {
+        if (index.apply(deltas)) {
+            return true;
+        }
+        // Once a change is dropped the index is incomplete, so it must stop answering
+        state = State.DISABLED;
+        LOGGER.warn("Customer name index disabled: applying {} name changes would exceed its maximum size of {}",
+                deltas.size(), maxSize);
+        return false;
+    }
+
+    /**
+     * Name changes of one or more customers, collected while they are written.
+     */
+    public static class Changes {
+
+        private final Map<String, Integer> deltas = new HashMap<>();
+
+        public Changes add(Customer customer) {
+            return add(customer.getFirstName(), customer.getLastName());
+        }
+
+        public Changes add(String firstName, String lastName) {
+            deltas.merge(firstName, 1, Integer::sum);
+            deltas.merge(lastName, 1, Integer::sum);
+            return this;
+        }
+
+        public Changes remove(Customer customer) {
+            return remove(customer.getFirstName(), customer.getLastName());
+        }
+
+        public Changes remove(String firstName, String lastName) {
+            deltas.merge(firstName, -1, Integer::sum);
+            deltas.merge(lastName, -1, Integer::sum);
+            return this;
+        }
+    }
+}
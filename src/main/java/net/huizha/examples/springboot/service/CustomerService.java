@@ -1,72 +1,289 @@
 package net.huizha.examples.springboot.service;
 
-import java.util.ArrayList;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.SpecHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.validation.annotation.Validated;
 
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import net.huizha.examples.springboot.model.customer.Customer;
+import net.huizha.examples.springboot.model.customer.CustomerBatchResult;
 import net.huizha.examples.springboot.model.customer.CustomerDto;
+import net.huizha.examples.springboot.model.customer.CustomerName;
+import net.huizha.examples.springboot.model.customer.CustomerPatch;
 import net.huizha.examples.springboot.repository.CustomerRepository;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 @Validated
 public class CustomerService {
 
     private final CustomerRepository customerRepository;
 
-    private CustomerDto toCustomerDtoFrom(@Valid @NotNull Customer customer) {
-        return CustomerDto.builder().id(customer.getId()).firstName(customer.getFirstName())
-                .lastName(customer.getLastName()).build();
+    private final EntityManager entityManager;
+
+    private final Validator validator;
+
+    private final CustomerNameIndex customerNameIndex;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Rows persisted between flush/clear in createCustomers; should match hibernate.jdbc.batch_size
+    @Value("${customer.batch.flush-size:50}")
+    private int batchFlushSize;
+
+    // Attempts of an update that does not expect a version, or of a delete, before a conflict is given up on
+    @Value("${customer.update.retry.max-attempts:5}")
+    private int updateMaxAttempts;
+
+    // Pause before the first retry; it doubles with every further one
+    @Value("${customer.update.retry.min-backoff:PT0.005S}")
+    private Duration updateMinBackoff;
+
+    // Fraction by which each pause is randomly lengthened or shortened, so conflicting writers do not retry in step
+    @Value("${customer.update.retry.jitter:0.5}")
+    private double updateJitter;
+
+    public CustomerDto createCustomer(@Valid @NotNull CustomerDto customerDto) {
+        Customer createdCustomer = customerRepository.save(CustomerMapper.toCustomer(customerDto));
+        customerNameIndex.record(new CustomerNameIndex.Changes().add(createdCustomer));
+        return CustomerMapper.toCustomerDto(createdCustomer);
     }
 
-    private Customer toCustomerFrom(@Valid @NotNull CustomerDto customerDto) {
-        return new Customer(customerDto.getFirstName(), customerDto.getLastName());
+    @Transactional
+    public CustomerBatchResult createCustomers(@NotNull Iterator<CustomerDto> customerDtos) {
+        // Bulk imports would otherwise flood the second-level cache with rows nobody has asked for yet
+        entityManager.setProperty(SpecHints.HINT_SPEC_CACHE_STORE_MODE, CacheStoreMode.BYPASS);
+        CustomerBatchResult result = new CustomerBatchResult();
+        CustomerNameIndex.Changes nameChanges = new CustomerNameIndex.Changes();
+        int index = 0;
+        int pending = 0;
+        while (customerDtos.hasNext()) {
+            CustomerDto customerDto = customerDtos.next();
+            String violations = validate(customerDto);
+            if (violations != null) {
+                result.getFailures().add(new CustomerBatchResult.Failure(index, violations));
+            } else {
+                Customer customer = CustomerMapper.toCustomer(customerDto);
+                entityManager.persist(customer);
+                nameChanges.add(customer);
+                result.setCreated(result.getCreated() + 1);
+                if (++pending == batchFlushSize) {
+                    // Send the JDBC batch and drop the managed entities so memory stays flat
+                    entityManager.flush();
+                    entityManager.clear();
+                    pending = 0;
+                }
+            }
+            index++;
+        }
+        customerNameIndex.record(nameChanges);
+        return result;
     }
 
-    public CustomerDto createCustomer(@Valid @NotNull CustomerDto customerDto) {
-        Customer createdCustomer = customerRepository.save(toCustomerFrom(customerDto));
-        return toCustomerDtoFrom(createdCustomer);
+    private String validate(CustomerDto customerDto) {
+        if (customerDto == null) {
+            return "customerDto: must not be null";
+        }
+        Set<ConstraintViolation<CustomerDto>> violations = validator.validate(customerDto);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream().map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted().collect(Collectors.joining("; "));
     }
 
+    // The list reads project rows straight into DTOs; there is nothing to hydrate, track or copy
+    @Transactional(readOnly = true)
     public List<CustomerDto> getCustomers() {
-        List<CustomerDto> result = new ArrayList<>();
-        List<Customer> customerList = customerRepository.findAll();
-        for (Customer customer : customerList) {
-            result.add(toCustomerDtoFrom(customer));
+        return customerRepository.findAllDtos();
+    }
+
+    @Transactional(readOnly = true)
+    public List<CustomerDto> getCustomers(@Min(0) long afterId, @Min(1) int limit) {
+        return customerRepository.findDtosByIdGreaterThan(afterId, Limit.of(limit));
+    }
+
+    @Transactional(readOnly = true)
+    public void streamCustomers(@NotNull Consumer<CustomerDto> consumer) {
+        try (Stream<CustomerDto> customers = customerRepository.streamAllDtos()) {
+            customers.forEach(consumer);
         }
-        return result;
     }
 
+    // Loaded as an entity, unlike the list reads, because a single customer is usually in the second-level cache and
+    // then costs no query at all; the read-only transaction keeps Hibernate from taking a dirty-checking snapshot
+    @Transactional(readOnly = true)
     public Optional<CustomerDto> getCustomerById(long id) {
-        Optional<Customer> customerOpt = customerRepository.findById(id);
-        if (customerOpt.isPresent()) {
-            return Optional.of(toCustomerDtoFrom(customerOpt.get()));
-        } else {
-            return Optional.empty();
-        }
+        return customerRepository.findById(id).map(CustomerMapper::toCustomerDto);
     }
 
     public Optional<CustomerDto> updateCustomer(@Valid @NotNull CustomerDto customerDto) {
+        return updateCustomer(customerDto, null);
+    }
+
+    /**
+     * Replaces the names of the customer, provided it is still at {@code expectedVersion}. Without an expected version
+     * an update that loses the race to a concurrent one is retried on the new version, up to
+     * {@code customer.update.retry.max-attempts} times.
+     *
+     * @return the updated customer with its new version, or empty if it does not exist
+     * @throws OptimisticLockingFailureException if the customer is not at {@code expectedVersion}, or is still being
+     *             changed concurrently after the last attempt
+     */
+    public Optional<CustomerDto> updateCustomer(@Valid @NotNull CustomerDto customerDto, Long expectedVersion) {
+        // With an expected version the caller decided on what it read, so only the caller can try again
+        return executeRetryingConflicts(customerDto.getId(), expectedVersion == null,
+                status -> updateOnce(customerDto, expectedVersion));
+    }
+
+    // Runs action in a transaction of its own and, with retry, runs it again while it loses the race to a concurrent
+    // write of the customer, up to customer.update.retry.max-attempts times
+    private <T> T executeRetryingConflicts(Long id, boolean retry, TransactionCallback<T> action) {
+        for (int attempt = 1;; attempt++) {
+            try {
+                return transactionTemplate.execute(action);
+            } catch (OptimisticLockingFailureException e) {
+                if (!retry || attempt >= updateMaxAttempts) {
+                    throw e;
+                }
+                LOGGER.debug("Retrying write of Customer(id={}) after attempt {}: {}", id, attempt, e.getMessage());
+                pauseBeforeRetry(attempt);
+            }
+        }
+    }
+
+    // The customer is read once, usually from the second-level cache, and written with an UPDATE that checks the
+    // version it was read at; save() would merge the detached entity and read it again
+    private Optional<CustomerDto> updateOnce(CustomerDto customerDto, Long expectedVersion) {
         Optional<Customer> existingCustomerOpt = customerRepository.findById(customerDto.getId());
         if (existingCustomerOpt.isEmpty()) {
             return Optional.empty();
-        } else {
-            Customer existingCustomer = existingCustomerOpt.get();
-            existingCustomer.setFirstName(customerDto.getFirstName());
-            existingCustomer.setLastName(customerDto.getLastName());
-            Customer updatedCustomer = customerRepository.save(existingCustomer);
-            return Optional.of(toCustomerDtoFrom(updatedCustomer));
         }
+        Customer existingCustomer = existingCustomerOpt.get();
+        if (expectedVersion != null && !expectedVersion.equals(existingCustomer.getVersion())) {
+            throw new OptimisticLockingFailureException("Customer(id=" + customerDto.getId() + ") is at version "
+                    + existingCustomer.getVersion() + ", not " + expectedVersion);
+        }
+        CustomerNameIndex.Changes nameChanges = new CustomerNameIndex.Changes().remove(existingCustomer);
+        existingCustomer.setFirstName(customerDto.getFirstName());
+        existingCustomer.setLastName(customerDto.getLastName());
+        // Flushed now so a conflict surfaces as a translated exception and the returned version is the new one
+        customerRepository.flush();
+        customerNameIndex.record(nameChanges.add(existingCustomer));
+        return Optional.of(CustomerMapper.toCustomerDto(existingCustomer));
     }
 
-    public void deleteCustomerById(long id) {
-        customerRepository.deleteById(id);
+    private void pauseBeforeRetry(int attempt) {
+        double jitter = 1 + updateJitter * ThreadLocalRandom.current().nextDouble(-1, 1);
+        long pauseNanos = (long) (updateMinBackoff.toNanos() * Math.pow(2, attempt - 1) * jitter);
+        try {
+            Thread.sleep(Duration.ofNanos(pauseNanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OptimisticLockingFailureException("Interrupted while retrying a write", e);
+        }
+    }
+
+    /**
+     * Sets the non-null names of {@code patch} on every customer in {@code ids} with a single UPDATE.
+     *
+     * @return the number of customers updated; ids without a customer are ignored
+     */
+    @Transactional
+    public int updateCustomers(@NotEmpty Collection<Long> ids, @Valid @NotNull CustomerPatch patch) {
+        CustomerNameIndex.Changes nameChanges = new CustomerNameIndex.Changes();
+        if (customerNameIndex.isTracking()) {
+            for (CustomerName name : customerRepository.findNamesByIdIn(ids)) {
+                nameChanges.remove(name.getFirstName(), name.getLastName()).add(
+                        patch.getFirstName() != null ? patch.getFirstName() : name.getFirstName(),
+                        patch.getLastName() != null ? patch.getLastName() : name.getLastName());
+            }
+        }
+        int updated = customerRepository.updateNamesByIdIn(ids, patch.getFirstName(), patch.getLastName());
+        customerNameIndex.record(nameChanges);
+        return updated;
+    }
+
+    /**
+     * Deletes the customer at whatever version is current. The DELETE checks the version the customer was read at, so
+     * one that loses the race to a concurrent update is retried like an update without an expected version.
+     *
+     * @return whether the customer existed
+     * @throws OptimisticLockingFailureException if the customer is still being changed concurrently after the last
+     *             attempt
+     */
+    public boolean deleteCustomerById(long id) {
+        return Boolean.TRUE.equals(executeRetryingConflicts(id, true, status -> deleteOnce(id)));
+    }
+
+    private boolean deleteOnce(long id) {
+        Optional<Customer> customer = customerRepository.findById(id);
+        customer.ifPresent(existingCustomer -> {
+            // Found in the persistence context, so deleting does not read the row again
+            customerRepository.delete(existingCustomer);
+            // Flushed now so a conflict surfaces as a translated exception
+            customerRepository.flush();
+            customerNameIndex.record(new CustomerNameIndex.Changes().remove(existingCustomer));
+        });
+        return customer.isPresent();
+    }
+
+    /**
+     * Deletes every customer in {@code ids} with a single DELETE.
+     *
+     * @return the number of customers deleted; ids without a customer are ignored
+     */
+    @Transactional
+    public int deleteCustomersByIds(@NotEmpty Collection<Long> ids) {
+        CustomerNameIndex.Changes nameChanges = new CustomerNameIndex.Changes();
+        if (customerNameIndex.isTracking()) {
+            // The name index needs the names the DELETE is about to remove
+            for (CustomerName name : customerRepository.findNamesByIdIn(ids)) {
+                nameChanges.remove(name.getFirstName(), name.getLastName());
+            }
+        }
+        int deleted = customerRepository.deleteByIdIn(ids);
+        customerNameIndex.record(nameChanges);
+        return deleted;
+    }
+
+    public List<String> suggestNames(@NotBlank String prefix, @Min(1) int limit) {
+        Optional<List<String>> suggestions = customerNameIndex.suggest(prefix, limit);
+        if (suggestions.isPresent()) {
+            return suggestions.get();
+        }
+        // Same answer from the database: the first names and last names with the prefix, merged in order
+        TreeSet<String> names = new TreeSet<>(customerRepository.findFirstNamesStartingWith(prefix, Limit.of(limit)));
+        names.addAll(customerRepository.findLastNamesStartingWith(prefix, Limit.of(limit)));
+        return names.stream().limit(limit).toList();
     }
 }
@@ -0,0 +1,67 @@
+package net.huizha.examples.springboot.service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import lombok.extern.slf4j.Slf4j;
+import net.huizha.examples.springboot.model.currency.ExchangeResponse;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Non-blocking counterpart of {@link CurrencyClientService}. Each attempt is bounded by
+ * {@code currency.client.reactive.timeout}; 5xx responses, I/O errors and timeouts are retried with exponential
+ * backoff and jitter, so retries from many callers do not arrive in lockstep, for at most
+ * {@code currency.client.reactive.retry.max-attempts} attempts in all.
+ */
+@Service
+@Slf4j
+public class ReactiveCurrencyClientService {
+
+    private static final String CURRENCIES_PATH = "/currency-server/currencies";
+
+    private final WebClient currencyWebClient;
+
+    private final Duration timeout;
+
+    private final Retry retry;
+
+    public ReactiveCurrencyClientService(WebClient currencyWebClient,
+            @Value("${currency.client.reactive.timeout:PT5S}") Duration timeout,
+            @Value("${currency.client.reactive.retry.max-attempts:3}") int maxAttempts,
+            @Value("${currency.client.reactive.retry.min-backoff:PT0.1S}") Duration minBackoff,
+            @Value("${currency.client.reactive.retry.jitter:0.5}") double jitter) {
+        this.currencyWebClient = currencyWebClient;
+        this.timeout = timeout;
+        // Counts attempts like customer.update.retry.max-attempts; Retry.backoff counts the retries after the first
+        this.retry = Retry.backoff(maxAttempts - 1, minBackoff).jitter(jitter)
+                .filter(ReactiveCurrencyClientService::isTransient)
+                .doBeforeRetry(signal -> LOGGER.warn("Retrying GET {} after: {}", CURRENCIES_PATH,
+                        signal.failure().getMessage()));
+    }
+
+    /**
+     * @return the currency data, or an empty Mono when the currency server returned no body
+     */
+    public Mono<ExchangeResponse> getCurrencyData() {
+        return currencyWebClient.get()
+                .uri(CURRENCIES_PATH)
+                .retrieve()
+                .bodyToMono(ExchangeResponse.class)
+                .timeout(timeout)
+                .retryWhen(retry);
+    }
+
+    private static boolean isTransient(Throwable throwable) {
+        if (throwable instanceof WebClientResponseException responseException) {
+            return responseException.getStatusCode().is5xxServerError();
+        }
+        return throwable instanceof WebClientRequestException || throwable instanceof TimeoutException;
+    }
+}
@@ -0,0 +1,51 @@
+package net.huizha.examples.springboot.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import net.huizha.examples.springboot.model.currency.ExchangeResponse;
+import net.huizha.examples.springboot.model.customer.CustomerDto;
+
+/**
+ * Readers and writers for the types read and written on hot paths, built once from the application's
+ * {@link ObjectMapper}. They are immutable and thread-safe, and resolve their root (de)serializer up front instead
+ * of on every call. The currency documents also have Smile ones, from a copy of the mapper.
+ */
+@Getter
+public class JsonCodecs {
+
+    private final ObjectReader customerDtoReader;
+
+    private final ObjectWriter customerDtoWriter;
+
+    private final ObjectReader exchangeResponseReader;
+
+    private final ObjectWriter exchangeResponseWriter;
+
+    @Getter(AccessLevel.NONE)
+    private final ObjectReader exchangeResponseSmileReader;
+
+    @Getter(AccessLevel.NONE)
+    private final ObjectWriter exchangeResponseSmileWriter;
+
+    public JsonCodecs(ObjectMapper objectMapper) {
+        this.customerDtoReader = objectMapper.readerFor(CustomerDto.class);
+        this.customerDtoWriter = objectMapper.writerFor(CustomerDto.class);
+        this.exchangeResponseReader = objectMapper.readerFor(ExchangeResponse.class);
+        this.exchangeResponseWriter = objectMapper.writerFor(ExchangeResponse.class);
+        ObjectMapper smileMapper = JsonUtil.smile(objectMapper);
+        this.exchangeResponseSmileReader = smileMapper.readerFor(ExchangeResponse.class);
+        this.exchangeResponseSmileWriter = smileMapper.writerFor(ExchangeResponse.class);
+    }
+
+    public ObjectReader getExchangeResponseReader(WireFormat format) {
+        return format == WireFormat.SMILE ? exchangeResponseSmileReader : exchangeResponseReader;
+    }
+
+    public ObjectWriter getExchangeResponseWriter(WireFormat format) {
+        return format == WireFormat.SMILE ? exchangeResponseSmileWriter : exchangeResponseWriter;
+    }
+}
@@ -0,0 +1,107 @@
+package net.huizha.examples.springboot.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts occurrences of terms and answers prefix lookups over them.
+ * <ul>
+ * <li>Terms are held once each in a sorted array, so a lookup is a binary search followed by a scan of the matching
+ * range.</li>
+ * <li>Readers never lock: every change builds a new snapshot, which makes single changes O(n); batch them with
+ * {@link #apply(Map)}.</li>
+ * <li>A change that would take the estimated footprint above {@code maxBytes} is rejected and leaves the index
+ * unchanged.</li>
+ * </ul>
+ */
+public class PrefixIndex {
+
+    // Array slots, String header and the byte[] header of a compact (Latin-1) string, with compressed oops
+    private static final long BYTES_PER_TERM = 4 + 4 + 24 + 16;
+
+    private record Snapshot(String[] terms, int[] counts, long estimatedBytes) {
+    }
+
+    private final long maxBytes;
+
+    private volatile Snapshot snapshot = new Snapshot(new String[0], new int[0], 0);
+
+    public PrefixIndex(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns up to {@code limit} terms starting with {@code prefix}, in ascending order.
+     */
+    public List<String> suggest(String prefix, int limit) {
+        Snapshot current = snapshot;
+        String[] terms = current.terms();
+        int from = Arrays.binarySearch(terms, prefix);
+        if (from < 0) {
+            from = -from - 1;
+        }
+        List<String> result = new ArrayList<>(Math.min(limit, 16));
+        for (int i = from; i < terms.length && result.size() < limit && terms[i].startsWith(prefix); i++) {
+            result.add(terms[i]);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Adds each delta to the count of its term; terms whose count drops to zero or below are removed.
+     *
+     * @return {@code false} if the result would exceed the memory ceiling, in which case nothing is changed
+     */
+    public synchronized boolean apply(Map<String, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return true;
+        }
+        Snapshot current = snapshot;
+        String[] changed = deltas.keySet().toArray(new String[0]);
+        Arrays.sort(changed);
+        String[] terms = new String[current.terms().length + changed.length];
+        int[] counts = new int[terms.length];
+        long estimatedBytes = 0;
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < current.terms().length || j < changed.length) {
+            int order = i == current.terms().length ? 1
+                    : j == changed.length ? -1 : current.terms()[i].compareTo(changed[j]);
+            String term;
+            int count;
+            if (order < 0) {
+                term = current.terms()[i];
+                count = current.counts()[i++];
+            } else if (order > 0) {
+                term = changed[j];
+                count = deltas.get(changed[j++]);
+            } else {
+                // Keep the instance already in the index so equal terms share one String
+                term = current.terms()[i];
+                count = current.counts()[i++] + deltas.get(changed[j++]);
+            }
+            if (count > 0) {
+                terms[size] = term;
+                counts[size++] = count;
+                estimatedBytes += BYTES_PER_TERM + term.length();
+            }
+        }
+        if (estimatedBytes > maxBytes) {
+            return false;
+        }
+        snapshot = new Snapshot(Arrays.copyOf(terms, size), Arrays.copyOf(counts, size), estimatedBytes);
+        return true;
+    }
+
+    public int size() {
+        return snapshot.terms().length;
+    }
+
+    public long estimatedBytes() {
+        return snapshot.estimatedBytes();
+    }
+}
@@ -0,0 +1,152 @@
+package net.huizha.examples.springboot.util;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Caches a single value for a time-to-live.
+ * <ul>
+ * <li>A read within the last {@code refreshAhead} of the TTL returns the cached value and reloads it in the
+ * background.</li>
+ * <li>A read after the TTL reloads synchronously; concurrent reads share one in-flight load.</li>
+ * <li>When a load fails and {@code serveStaleOn} accepts the exception, the expired value is returned instead.</li>
+ * </ul>
+ * The loader receives the previously loaded value (or {@code null}) so it can revalidate it, e.g. with a conditional
+ * request. It may return {@code null}, which is cached like any other value.
+ */
+public class RefreshAheadCache<V> {
+
+    private record Loaded<V>(V value, long loadedAtNanos) {
+    }
+
+    private final UnaryOperator<V> loader;
+
+    private final long ttlNanos;
+
+    private final long refreshAheadNanos;
+
+    private final Executor executor;
+
+    private final Predicate<RuntimeException> serveStaleOn;
+
+    private final LongSupplier nanoClock;
+
+    private final AtomicReference<CompletableFuture<Loaded<V>>> inFlight = new AtomicReference<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder staleHits = new LongAdder();
+
+    private final LongAdder loads = new LongAdder();
+
+    private final LongAdder loadFailures = new LongAdder();
+
+    private volatile Loaded<V> loaded;
+
+    public RefreshAheadCache(UnaryOperator<V> loader, Duration ttl, Duration refreshAhead, Executor executor,
+            Predicate<RuntimeException> serveStaleOn) {
+        this(loader, ttl, refreshAhead, executor, serveStaleOn, System::nanoTime);
+    }
+
+    RefreshAheadCache(UnaryOperator<V> loader, Duration ttl, Duration refreshAhead, Executor executor,
+            Predicate<RuntimeException> serveStaleOn, LongSupplier nanoClock) {
+        this.loader = loader;
+        this.ttlNanos = ttl.toNanos();
+        this.refreshAheadNanos = Math.min(refreshAhead.toNanos(), ttlNanos);
+        this.executor = executor;
+        this.serveStaleOn = serveStaleOn;
+        this.nanoClock = nanoClock;
+    }
+
+    public V get() {
+        Loaded<V> current = loaded;
+        if (current != null) {
+            long age = nanoClock.getAsLong() - current.loadedAtNanos();
+            if (age < ttlNanos) {
+                hits.increment();
+                if (age >= ttlNanos - refreshAheadNanos) {
+                    load(true);
+                }
+                return current.value();
+            }
+        }
+        misses.increment();
+        try {
+            return load(false).join().value();
+        } catch (CompletionException e) {
+            if (!(e.getCause() instanceof RuntimeException cause)) {
+                throw e;
+            }
+            if (current != null && serveStaleOn.test(cause)) {
+                staleHits.increment();
+                return current.value();
+            }
+            throw cause;
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long staleHitCount() {
+        return staleHits.sum();
+    }
+
+    public long loadCount() {
+        return loads.sum();
+    }
+
+    public long loadFailureCount() {
+        return loadFailures.sum();
+    }
+
+    private CompletableFuture<Loaded<V>> load(boolean async) {
+        CompletableFuture<Loaded<V>> future = new CompletableFuture<>();
+        CompletableFuture<Loaded<V>> existing = inFlight.compareAndExchange(null, future);
+        if (existing != null) {
+            return existing;
+        }
+        Runnable task = () -> {
+            loads.increment();
+            try {
+                Loaded<V> previous = loaded;
+                Loaded<V> result = new Loaded<>(loader.apply(previous != null ? previous.value() : null),
+                        nanoClock.getAsLong());
+                loaded = result;
+                future.complete(result);
+            } catch (RuntimeException | Error e) {
+                loadFailures.increment();
+                future.completeExceptionally(e);
+            } finally {
+                inFlight.set(null);
+            }
+        };
+        if (!async) {
+            task.run();
+            return future;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // The next read will retry; readers that already joined this load must not wait for it forever
+            inFlight.set(null);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
@@ -0,0 +1,138 @@
+package net.huizha.examples.springboot.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Gzip for bodies that are serialized once and served many times. Tomcat compresses other JSON responses itself, but
+ * on every request, and never those with a strong ETag. These bodies are compressed once, at the highest level, and
+ * served as a separate representation with its own ETag when the request accepts gzip.
+ * <p>
+ * Follows the {@code server.compression.enabled} and {@code server.compression.min-response-size} settings of the
+ * server, so both paths compress the same responses.
+ */
+public class ResponseCompression {
+
+    public static final String GZIP = "gzip";
+
+    private final boolean enabled;
+
+    private final long minResponseSize;
+
+    public ResponseCompression(boolean enabled, DataSize minResponseSize) {
+        this.enabled = enabled;
+        this.minResponseSize = minResponseSize.toBytes();
+    }
+
+    /**
+     * @return {@code body} gzipped, or {@code null} when compression is disabled or the body is below the minimum
+     *         response size
+     */
+    public byte[] precompress(byte[] body) {
+        if (!enabled || body.length < minResponseSize) {
+            return null;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(body);
+        } catch (IOException e) {
+            // Not thrown by an in-memory stream
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Completes {@code response} with {@code gzip} and {@code Content-Encoding: gzip} when there is one and
+     * {@code acceptEncoding} allows it, else with {@code body}. The gzip representation gets {@code etag} with a
+     * {@code -gzip} suffix, so a matching {@code If-None-Match} still yields 304 and caches keep both apart.
+     */
+    public ResponseEntity<byte[]> body(ResponseEntity.BodyBuilder response, String etag, byte[] body, byte[] gzip,
+            String acceptEncoding) {
+        if (gzip == null) {
+            if (etag != null) {
+                response.eTag(etag);
+            }
+            return response.body(body);
+        }
+        // Added to, not replacing, any Vary the caller has set
+        response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (!acceptsGzip(acceptEncoding)) {
+            if (etag != null) {
+                response.eTag(etag);
+            }
+            return response.body(body);
+        }
+        if (etag != null) {
+            response.eTag(gzipETag(etag));
+        }
+        return response.header(HttpHeaders.CONTENT_ENCODING, GZIP).body(gzip);
+    }
+
+    /**
+     * @return the ETag of the gzip representation of a body with {@code etag}
+     */
+    public static String gzipETag(String etag) {
+        return WireFormat.variantETag(etag, GZIP);
+    }
+
+    /**
+     * @return {@code etag} without the suffix of {@link #gzipETag}, so the plain and gzip representations of a body
+     *         compare equal
+     */
+    public static String identityETag(String etag) {
+        String suffix = "-" + GZIP;
+        if (etag.endsWith(suffix + "\"")) {
+            return etag.substring(0, etag.length() - suffix.length() - 1) + "\"";
+        }
+        return etag.endsWith(suffix) ? etag.substring(0, etag.length() - suffix.length()) : etag;
+    }
+
+    /**
+     * @return whether an {@code Accept-Encoding} header value allows gzip: listed as {@code gzip} or {@code x-gzip},
+     *         or covered by {@code *}, with a non-zero quality
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            int parameters = coding.indexOf(';');
+            String name = (parameters < 0 ? coding : coding.substring(0, parameters)).trim();
+            boolean accepted = parameters < 0 || quality(coding.substring(parameters + 1)) > 0;
+            if (GZIP.equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name)) {
+                return accepted;
+            }
+            if ("*".equals(name)) {
+                wildcard = accepted;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    private static double quality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            String[] nameAndValue = parameter.split("=", 2);
+            if (nameAndValue.length == 2 && "q".equalsIgnoreCase(nameAndValue[0].trim())) {
+                try {
+                    return Double.parseDouble(nameAndValue[1].trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
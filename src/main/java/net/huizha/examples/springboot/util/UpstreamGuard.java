@@ -0,0 +1,438 @@
+package net.huizha.examples.springboot.util;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Value;
+
+/**
+ * Protects callers from a slow or failing upstream. Each call runs on a thread of the guard while the caller waits
+ * for it, so the caller can give up before the client's read timeout. With {@code virtualThreads}, every call gets a
+ * new virtual thread instead of a pooled platform thread.
+ * <ul>
+ * <li>Circuit breaker: when at least {@code failureRate} of the last {@code failureWindow} calls failed, calls are
+ * rejected without reaching the upstream for {@code openDuration}. Then a single probe call decides whether the
+ * circuit closes again or stays open for another {@code openDuration}.</li>
+ * <li>Bulkhead: at most {@code maxConcurrent} calls are in flight, including those the caller gave up on. A call
+ * waits up to {@code maxWait} for a slot and is rejected after that.</li>
+ * <li>Adaptive timeout: once {@code minSamples} latencies were observed, a caller waits
+ * {@code timeoutMultiplier} times the {@code timeoutPercentile} latency of the last {@code latencyWindow} successful
+ * calls, within {@code minTimeout} and {@code maxTimeout}. Until then, and for probes, it waits for the call to
+ * finish, bounded by the client's own timeouts.</li>
+ * <li>Hedging: with {@code hedging}, a call still running after the {@code hedgePercentile} latency is sent a second
+ * time when a bulkhead slot is free, and the first success wins. Only for idempotent calls.</li>
+ * </ul>
+ * Failures that {@code isFailure} rejects, such as client errors, count as successes for the circuit breaker.
+ */
+public class UpstreamGuard implements AutoCloseable {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public enum Rejection {
+        CIRCUIT_OPEN, BULKHEAD_FULL
+    }
+
+    /**
+     * Thrown instead of calling the upstream.
+     */
+    @Getter
+    public static class RejectedException extends RestClientException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Rejection reason;
+
+        public RejectedException(String name, Rejection reason) {
+            super("Call to " + name + " rejected: " + reason);
+            this.reason = reason;
+        }
+    }
+
+    @Value
+    @Builder
+    public static class Settings {
+
+        @Builder.Default
+        int failureWindow = 20;
+
+        @Builder.Default
+        int minimumCalls = 10;
+
+        @Builder.Default
+        double failureRate = 0.5;
+
+        @Builder.Default
+        Duration openDuration = Duration.ofSeconds(10);
+
+        @Builder.Default
+        int maxConcurrent = 20;
+
+        @Builder.Default
+        Duration maxWait = Duration.ofMillis(100);
+
+        @Builder.Default
+        int latencyWindow = 100;
+
+        @Builder.Default
+        int minSamples = 20;
+
+        @Builder.Default
+        double timeoutPercentile = 0.99;
+
+        @Builder.Default
+        double timeoutMultiplier = 3;
+
+        @Builder.Default
+        Duration minTimeout = Duration.ofMillis(200);
+
+        @Builder.Default
+        Duration maxTimeout = Duration.ofSeconds(5);
+
+        @Builder.Default
+        boolean hedging = false;
+
+        @Builder.Default
+        double hedgePercentile = 0.95;
+
+        @Builder.Default
+        boolean virtualThreads = false;
+    }
+
+    private final String name;
+
+    private final Settings settings;
+
+    private final Predicate<RuntimeException> isFailure;
+
+    private final LongSupplier nanoClock;
+
+    private final Semaphore bulkhead;
+
+    private final ExecutorService executor;
+
+    // Circuit breaker outcomes of the last failureWindow calls, true for a failure; guarded by this
+    private final boolean[] outcomes;
+
+    private int outcomeCount;
+
+    private int outcomeIndex;
+
+    private int failureCount;
+
+    private State state = State.CLOSED;
+
+    private long openUntilNanos;
+
+    private boolean probeInFlight;
+
+    // Latencies of the last latencyWindow successful calls; guarded by latencies
+    private final long[] latencies;
+
+    private int latencyCount;
+
+    private int latencyIndex;
+
+    private final LongAdder circuitRejections = new LongAdder();
+
+    private final LongAdder bulkheadRejections = new LongAdder();
+
+    private final LongAdder timeouts = new LongAdder();
+
+    private final LongAdder hedges = new LongAdder();
+
+    public UpstreamGuard(String name, Settings settings, Predicate<RuntimeException> isFailure) {
+        this(name, settings, isFailure, System::nanoTime);
+    }
+
+    UpstreamGuard(String name, Settings settings, Predicate<RuntimeException> isFailure, LongSupplier nanoClock) {
+        this.name = name;
+        this.settings = settings;
+        this.isFailure = isFailure;
+        this.nanoClock = nanoClock;
+        this.bulkhead = new Semaphore(settings.getMaxConcurrent());
+        if (settings.isVirtualThreads()) {
+            this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 1).factory());
+        } else {
+            // One thread per bulkhead slot, so an admitted call never queues behind another
+            ThreadPoolExecutor threadPool = new ThreadPoolExecutor(settings.getMaxConcurrent(),
+                    settings.getMaxConcurrent(), 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    Thread.ofPlatform().name(name + "-", 1).daemon().factory());
+            threadPool.allowCoreThreadTimeOut(true);
+            this.executor = threadPool;
+        }
+        this.outcomes = new boolean[settings.getFailureWindow()];
+        this.latencies = new long[settings.getLatencyWindow()];
+    }
+
+    /**
+     * @return the result of {@code call}
+     * @throws RejectedException when the circuit is open or the bulkhead full
+     * @throws ResourceAccessException when the call takes longer than the adaptive timeout
+     */
+    public <T> T call(Supplier<T> call) {
+        boolean probe = acquirePermission();
+        if (!acquireSlot()) {
+            releasePermission(probe);
+            bulkheadRejections.increment();
+            throw new RejectedException(name, Rejection.BULKHEAD_FULL);
+        }
+        long started = nanoClock.getAsLong();
+        long timeoutNanos = probe ? -1 : timeoutNanos();
+        try {
+            CompletableFuture<T> result = attempt(call);
+            long hedgeDelayNanos = settings.isHedging() && !probe ? percentileNanos(settings.getHedgePercentile()) : -1;
+            if (hedgeDelayNanos >= 0 && (timeoutNanos < 0 || hedgeDelayNanos < timeoutNanos)) {
+                result = hedge(call, result, started + hedgeDelayNanos);
+            }
+            T value = await(result,
+                    timeoutNanos < 0 ? -1 : Math.max(0, started + timeoutNanos - nanoClock.getAsLong()));
+            recordOutcome(probe, false);
+            return value;
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            recordOutcome(probe, true);
+            throw new ResourceAccessException("Call to " + name + " timed out after "
+                    + Duration.ofNanos(timeoutNanos).toMillis() + " ms");
+        } catch (RuntimeException e) {
+            recordOutcome(probe, isFailure.test(e));
+            throw e;
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && nanoClock.getAsLong() >= openUntilNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * @return how long a caller currently waits for a call, or {@code null} while it waits for the call to finish
+     */
+    public Duration getTimeout() {
+        long timeoutNanos = timeoutNanos();
+        return timeoutNanos < 0 ? null : Duration.ofNanos(timeoutNanos);
+    }
+
+    public int availableSlots() {
+        return bulkhead.availablePermits();
+    }
+
+    public long rejectionCount(Rejection reason) {
+        return (reason == Rejection.CIRCUIT_OPEN ? circuitRejections : bulkheadRejections).sum();
+    }
+
+    public long timeoutCount() {
+        return timeouts.sum();
+    }
+
+    public long hedgeCount() {
+        return hedges.sum();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // Starts a second attempt once the first is still running at hedgeAtNanos, if a slot is free. The wait is
+    // measured again on the clock after each timeout, so the guard's clock alone decides when to hedge.
+    private <T> CompletableFuture<T> hedge(Supplier<T> call, CompletableFuture<T> primary, long hedgeAtNanos) {
+        try {
+            for (long waitNanos = hedgeAtNanos - nanoClock.getAsLong(); waitNanos > 0;
+                    waitNanos = hedgeAtNanos - nanoClock.getAsLong()) {
+                try {
+                    primary.get(waitNanos, TimeUnit.NANOSECONDS);
+                    return primary;
+                } catch (TimeoutException e) {
+                    // Check the clock again
+                }
+            }
+            if (primary.isDone() || !bulkhead.tryAcquire()) {
+                return primary;
+            }
+            hedges.increment();
+            return firstSuccess(primary, attempt(call));
+        } catch (ExecutionException e) {
+            return primary;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RestClientException("Interrupted while calling " + name, e);
+        }
+    }
+
+    // Runs call on a thread of the guard, which gives back the bulkhead slot the caller acquired once it finishes.
+    // The slot is free before the result is visible, so a caller may go straight on to its next call.
+    private <T> CompletableFuture<T> attempt(Supplier<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                long started = nanoClock.getAsLong();
+                try {
+                    T value = call.get();
+                    recordLatency(nanoClock.getAsLong() - started);
+                    bulkhead.release();
+                    future.complete(value);
+                } catch (RuntimeException | Error e) {
+                    bulkhead.release();
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            throw new RestClientException("Guard of " + name + " is closed", e);
+        }
+        return future;
+    }
+
+    private <T> T await(CompletableFuture<T> result, long timeoutNanos) throws TimeoutException {
+        try {
+            return timeoutNanos < 0 ? result.get() : result.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new RestClientException("Call to " + name + " failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RestClientException("Interrupted while calling " + name, e);
+        }
+    }
+
+    private static <T> CompletableFuture<T> firstSuccess(CompletableFuture<T> first, CompletableFuture<T> second) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        BiConsumer<T, Throwable> complete = (value, failure) -> {
+            if (failure == null) {
+                result.complete(value);
+            } else if (failures.incrementAndGet() == 2) {
+                result.completeExceptionally(failure);
+            }
+        };
+        first.whenComplete(complete);
+        second.whenComplete(complete);
+        return result;
+    }
+
+    private boolean acquireSlot() {
+        try {
+            return bulkhead.tryAcquire(settings.getMaxWait().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // @return whether the call is the probe of a half-open circuit
+    private synchronized boolean acquirePermission() {
+        if (state == State.OPEN && nanoClock.getAsLong() >= openUntilNanos) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.CLOSED) {
+            return false;
+        }
+        if (state == State.HALF_OPEN && !probeInFlight) {
+            probeInFlight = true;
+            return true;
+        }
+        circuitRejections.increment();
+        throw new RejectedException(name, Rejection.CIRCUIT_OPEN);
+    }
+
+    private synchronized void releasePermission(boolean probe) {
+        if (probe) {
+            probeInFlight = false;
+        }
+    }
+
+    private synchronized void recordOutcome(boolean probe, boolean failure) {
+        if (probe) {
+            probeInFlight = false;
+            if (failure) {
+                open();
+            } else {
+                state = State.CLOSED;
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            // Calls admitted before the circuit opened neither extend nor close it
+            return;
+        }
+        if (outcomeCount == outcomes.length) {
+            failureCount -= outcomes[outcomeIndex] ? 1 : 0;
+        } else {
+            outcomeCount++;
+        }
+        outcomes[outcomeIndex] = failure;
+        failureCount += failure ? 1 : 0;
+        outcomeIndex = (outcomeIndex + 1) % outcomes.length;
+        if (outcomeCount >= settings.getMinimumCalls() && failureCount >= settings.getFailureRate() * outcomeCount) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntilNanos = nanoClock.getAsLong() + settings.getOpenDuration().toNanos();
+        outcomeCount = 0;
+        outcomeIndex = 0;
+        failureCount = 0;
+    }
+
+    private void recordLatency(long nanos) {
+        synchronized (latencies) {
+            latencies[latencyIndex] = nanos;
+            latencyIndex = (latencyIndex + 1) % latencies.length;
+            latencyCount = Math.min(latencyCount + 1, latencies.length);
+        }
+    }
+
+    // -1 until minSamples latencies were observed
+    private long timeoutNanos() {
+        long percentile = percentileNanos(settings.getTimeoutPercentile());
+        if (percentile < 0) {
+            return -1;
+        }
+        return Math.clamp((long) (percentile * settings.getTimeoutMultiplier()), settings.getMinTimeout().toNanos(),
+                settings.getMaxTimeout().toNanos());
+    }
+
+    private long percentileNanos(double percentile) {
+        long[] sorted;
+        synchronized (latencies) {
+            if (latencyCount < Math.max(1, settings.getMinSamples())) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(latencies, latencyCount);
+        }
+        Arrays.sort(sorted);
+        return sorted[Math.max(0, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,100 @@
+package net.huizha.examples.springboot.util;
+
+import java.util.List;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+/**
+ * The encodings the currency documents are served and fetched in. Smile is Jackson's binary JSON: the same data
+ * model, with property names and short strings written once per document and referenced afterwards, and numbers and
+ * lengths in binary, so it is smaller and parses without scanning text.
+ */
+public enum WireFormat {
+
+    JSON(MediaType.APPLICATION_JSON, null),
+
+    SMILE(MediaType.valueOf(WireFormat.SMILE_VALUE), "smile");
+
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    private final MediaType mediaType;
+
+    private final String etagVariant;
+
+    WireFormat(MediaType mediaType, String etagVariant) {
+        this.mediaType = mediaType;
+        this.etagVariant = etagVariant;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * @return the ETag of this representation of the data whose JSON has {@code etag}, or {@code null} for none
+     */
+    public String etag(String etag) {
+        return etag == null || etagVariant == null ? etag : variantETag(etag, etagVariant);
+    }
+
+    /**
+     * Picks the format for an {@code Accept} header value: Smile when it is listed explicitly with a quality at least
+     * that of JSON, otherwise JSON. Wildcards never select Smile, so clients only get it when they ask for it.
+     */
+    public static WireFormat negotiate(String accept) {
+        if (accept == null || !accept.contains(SMILE_VALUE)) {
+            return JSON;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return JSON;
+        }
+        double smile = 0;
+        double json = 0;
+        for (MediaType mediaType : mediaTypes) {
+            if (SMILE.mediaType.equalsTypeAndSubtype(mediaType)) {
+                smile = Math.max(smile, mediaType.getQualityValue());
+            } else if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+                json = Math.max(json, mediaType.getQualityValue());
+            }
+        }
+        return smile > 0 && smile >= json ? SMILE : JSON;
+    }
+
+    /**
+     * @return the format of a response with {@code contentType}, JSON when it is missing or anything else
+     */
+    public static WireFormat of(MediaType contentType) {
+        return contentType != null && SMILE.mediaType.equalsTypeAndSubtype(contentType) ? SMILE : JSON;
+    }
+
+    /**
+     * @return the ETag of the JSON representation for {@code etag} of any format, the inverse of {@link #etag}
+     */
+    public static String jsonETag(String etag) {
+        for (WireFormat format : values()) {
+            if (format.etagVariant != null) {
+                String suffix = "-" + format.etagVariant;
+                if (etag.endsWith(suffix + "\"")) {
+                    return etag.substring(0, etag.length() - suffix.length() - 1) + "\"";
+                }
+                if (etag.endsWith(suffix)) {
+                    return etag.substring(0, etag.length() - suffix.length());
+                }
+            }
+        }
+        return etag;
+    }
+
+    /**
+     * Appends {@code variant} inside the quotes of {@code etag}: {@code "abc"} becomes {@code "abc-variant"} and
+     * {@code W/"abc"} becomes {@code W/"abc-variant"}.
+     */
+    public static String variantETag(String etag, String variant) {
+        return etag.endsWith("\"") ? etag.substring(0, etag.length() - 1) + "-" + variant + "\""
+                : etag + "-" + variant;
+    }
+}
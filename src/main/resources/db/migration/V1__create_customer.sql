@@ -0,0 +1,8 @@
+-- The sequence increment must match the entity's allocationSize
+CREATE SEQUENCE customer_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE customer (
+    id BIGINT PRIMARY KEY,
+    first_name VARCHAR(255) NOT NULL,
+    last_name VARCHAR(255) NOT NULL
+);
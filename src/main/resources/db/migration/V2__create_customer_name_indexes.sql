@@ -0,0 +1,6 @@
+-- Serves findByFirstName and the first-name prefix searches (LIKE 'prefix%' is a range scan on this index)
+CREATE INDEX idx_customer_first_name ON customer (first_name);
+
+-- Serves findByLastNameOrderByFirstNameAsc without a sort; a lookup by last name alone uses its leading column, so a
+-- separate last_name index would only slow down writes
+CREATE INDEX idx_customer_last_name_first_name ON customer (last_name, first_name);
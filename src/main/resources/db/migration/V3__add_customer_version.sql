@@ -0,0 +1,2 @@
+-- Optimistic locking: every UPDATE and DELETE of a customer checks and increments the version it read
+ALTER TABLE customer ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
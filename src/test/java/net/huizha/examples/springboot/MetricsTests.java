@@ -0,0 +1,80 @@
+package net.huizha.examples.springboot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.huizha.examples.springboot.repository.CustomerRepository;
+
+/**
+ * The meters behind {@code /actuator/prometheus}: endpoint and repository latency histograms, the connection pool
+ * and the JVM. The upstream client timer is covered by {@code CurrencyClientControllerMockServerTests}.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+class MetricsTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Test
+    void endpoints_should_recordLatencyHistogramWithPercentiles() throws Exception {
+        mockMvc.perform(get("/customers")).andExpect(status().isOk());
+        mockMvc.perform(get("/currency-server/currencies")).andExpect(status().isOk());
+
+        Timer customers = meterRegistry.get("http.server.requests").tag("uri", "/customers").tag("method", "GET")
+                .timer();
+        assertThat(customers.count()).isPositive();
+        assertThat(customers.takeSnapshot().percentileValues()).hasSize(3);
+        assertThat(customers.takeSnapshot().histogramCounts()).isNotEmpty();
+        assertThat(meterRegistry.get("http.server.requests").tag("uri", "/currency-server/currencies").timer()
+                .count()).isPositive();
+    }
+
+    @Test
+    void repositoryMethods_should_beTimed() {
+        customerRepository.count();
+
+        Timer count = meterRegistry.get("spring.data.repository.invocations")
+                .tag("repository", "CustomerRepository").tag("method", "count").timer();
+        assertThat(count.count()).isPositive();
+        assertThat(count.takeSnapshot().percentileValues()).hasSize(3);
+    }
+
+    @Test
+    void connectionPoolAndJvm_should_publishGauges() {
+        assertThat(meterRegistry.get("hikaricp.connections.max").gauge().value()).isPositive();
+        assertThat(meterRegistry.get("hikaricp.connections.active").gauge()).isNotNull();
+        assertThat(meterRegistry.get("jvm.gc.memory.allocated").counter()).isNotNull();
+        assertThat(meterRegistry.get("jvm.memory.used").gauges()).isNotEmpty();
+    }
+
+    @Test
+    void prometheusEndpoint_should_exposeHistogramBuckets() throws Exception {
+        mockMvc.perform(get("/customers")).andExpect(status().isOk());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/plain"))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(scrape).contains("http_server_requests_seconds_bucket{", "hikaricp_connections_max",
+                "jvm_gc_memory_allocated_bytes_total");
+    }
+}
@@ -8,5 +8,7 @@ public class TestConstants {
 
     public static final String CURRENCY_CLIENT_GET_CURRENCIES_PATH = "/currency-client/currencies";
 
+    public static final String CURRENCY_CLIENT_REACTIVE_GET_CURRENCIES_PATH = "/currency-client/reactive/currencies";
+
     public static final String CURRENCY_SERVER_GET_CURRENCIES_PATH = "/api/v1/currency-server/currencies";
 }
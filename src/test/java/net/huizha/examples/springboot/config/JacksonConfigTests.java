@@ -0,0 +1,40 @@
+package net.huizha.examples.springboot.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+import net.huizha.examples.springboot.model.customer.CustomerDto;
+import net.huizha.examples.springboot.util.JsonCodecs;
+import net.huizha.examples.springboot.util.JsonUtil;
+
+@SpringBootTest
+class JacksonConfigTests {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JsonCodecs jsonCodecs;
+
+    @Test
+    void objectMapper_should_useBlackbirdAndSharedBufferPool() {
+        assertThat(objectMapper.getRegisteredModuleIds()).contains(new BlackbirdModule().getTypeId());
+        assertThat(objectMapper.getFactory()._getRecyclerPool()).isSameAs(JsonRecyclerPools.sharedBoundedPool());
+    }
+
+    @Test
+    void jsonCodecs_should_writeLikeObjectMapperAndJsonUtil() throws Exception {
+        CustomerDto customerDto = CustomerDto.builder().id(1L).firstName("Ming").lastName("Li").build();
+        String json = jsonCodecs.getCustomerDtoWriter().writeValueAsString(customerDto);
+        assertThat(json).isEqualTo(objectMapper.writeValueAsString(customerDto))
+                .isEqualTo(JsonUtil.asJsonString(customerDto));
+        assertThat(jsonCodecs.getCustomerDtoReader().<CustomerDto>readValue(json)).isEqualTo(customerDto);
+    }
+}
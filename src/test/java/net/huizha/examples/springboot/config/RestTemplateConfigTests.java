@@ -0,0 +1,38 @@
+package net.huizha.examples.springboot.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@SpringBootTest
+class RestTemplateConfigTests {
+
+    @Autowired
+    private ClientHttpRequestFactory clientHttpRequestFactory;
+
+    @Autowired
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void requestFactory_should_usePooledHttpClient_byDefault() {
+        assertThat(clientHttpRequestFactory).isInstanceOf(HttpComponentsClientHttpRequestFactory.class);
+        assertThat(connectionManager.getMaxTotal()).isEqualTo(200);
+        assertThat(connectionManager.getDefaultMaxPerRoute()).isEqualTo(50);
+    }
+
+    @Test
+    void connectionManager_should_publishPoolMetrics() {
+        assertThat(meterRegistry.get("httpcomponents.httpclient.pool.total.max").tag("httpclient", "rest-template")
+                .gauge().value()).isEqualTo(200);
+    }
+}
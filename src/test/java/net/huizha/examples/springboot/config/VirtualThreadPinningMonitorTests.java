@@ -0,0 +1,40 @@
+package net.huizha.examples.springboot.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class VirtualThreadPinningMonitorTests {
+
+    private final Object lock = new Object();
+
+    @Test
+    void monitor_should_countPinning_whenVirtualThreadBlocksInsideSynchronized() throws InterruptedException {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(meterRegistry, Duration.ofMillis(1));
+        monitor.start();
+        try {
+            Thread.ofVirtual().start(this::sleepWhileHoldingLock).join();
+            await().atMost(Duration.ofSeconds(10)).untilAsserted(() -> assertThat(
+                    meterRegistry.get("jvm.threads.virtual.pinned").counter().count()).isGreaterThanOrEqualTo(1));
+        } finally {
+            monitor.stop();
+        }
+    }
+
+    private void sleepWhileHoldingLock() {
+        synchronized (lock) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
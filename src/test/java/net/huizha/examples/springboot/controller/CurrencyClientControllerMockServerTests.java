@@ -1,39 +1,71 @@
 package net.huizha.examples.springboot.controller;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockserver.integration.ClientAndServer.startClientAndServer;
 import static org.mockserver.model.HttpRequest.request;
 import static org.mockserver.model.HttpResponse.response;
 import static org.mockserver.verify.VerificationTimes.exactly;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockserver.integration.ClientAndServer;
+import org.mockserver.matchers.Times;
+import org.mockserver.model.Delay;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import net.huizha.examples.springboot.TestConstants;
+import net.huizha.examples.springboot.model.currency.ExchangeResponse;
+import net.huizha.examples.springboot.util.JsonCodecs;
+import net.huizha.examples.springboot.util.WireFormat;
 
 @SpringBootTest
 @AutoConfigureMockMvc
+// A fresh client per test, so no test sees the cached body or circuit state of another
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
 @Slf4j
 class CurrencyClientControllerMockServerTests {
 
     private static final ClientAndServer MOCK_SERVER = startClientAndServer(0);
 
+    private static final String EXCHANGE_RESPONSE_JSON = """
+        {
+          "head": { "version": "2.0", "provider": "CWAP", "rep_code": "200" },
+          "data": { "total": 1, "searchlist": ["USD/CNY"] },
+          "records": [ { "date": "2025-04-09", "values": ["7.2066"] } ]
+        }
+        """;
+
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JsonCodecs jsonCodecs;
+
     @BeforeAll
     static void logMockServer() {
         LOGGER.info("MockServer running on: {}", MOCK_SERVER.getPort());
@@ -52,6 +84,12 @@ class CurrencyClientControllerMockServerTests {
     @DynamicPropertySource
     static void registerBaseUrl(DynamicPropertyRegistry registry) {
         registry.add("api.base-url", () -> "http://localhost:" + MOCK_SERVER.getLocalPort() + "/api/v1");
+        // Every request revalidates upstream, so the tests control what the cache sees
+        registry.add("currency.client.cache.ttl", () -> "PT0S");
+        registry.add("http.client.read-timeout", () -> "PT1S");
+        // Slow calls end at the read timeout rather than the adaptive one, see CurrencyClientResilienceMockServerTests
+        registry.add("currency.client.timeout.min-samples", () -> "1000");
+        registry.add("currency.client.prefer-smile", () -> "true");
     }
 
     @Test
@@ -80,6 +118,8 @@ class CurrencyClientControllerMockServerTests {
                         }
                         """));
 
+        long successBefore = upstreamRequests("success");
+
         mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
                .andExpect(status().isOk())
                .andExpect(content().contentTypeCompatibleWith("application/json"))
@@ -89,5 +129,272 @@ class CurrencyClientControllerMockServerTests {
 
         MOCK_SERVER.verify(
             request().withMethod("GET").withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH), exactly(1));
+        assertThat(upstreamRequests("success")).isEqualTo(successBefore + 1);
+    }
+
+    @Test
+    void shouldReturnPrecompressedBody_whenGzipAccepted() throws Exception {
+        byte[] currencyJson = new ClassPathResource("json/currency.json").getContentAsByteArray();
+        MOCK_SERVER
+            .when(
+                request()
+                    .withMethod("GET")
+                    .withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH))
+            .respond(
+                response()
+                    .withHeader("Content-Type", "application/json")
+                    .withHeader("ETag", "\"v1\"")
+                    .withBody(currencyJson));
+
+        byte[] gzip = mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH)
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+               .andExpect(status().isOk())
+               .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+               .andExpect(header().string(HttpHeaders.ETAG, "\"v1-gzip\""))
+               .andReturn().getResponse().getContentAsByteArray();
+        byte[] json = mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+               .andExpect(status().isOk())
+               .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+               .andExpect(header().string(HttpHeaders.ETAG, "\"v1\""))
+               .andExpect(jsonPath("$.data.total").value(27))
+               .andReturn().getResponse().getContentAsByteArray();
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            assertThat(in.readAllBytes()).isEqualTo(json);
+        }
+    }
+
+    @Test
+    void shouldParseSmile_whenUpstreamAnswersInSmile() throws Exception {
+        ExchangeResponse currencies = jsonCodecs.getExchangeResponseReader()
+                .readValue(new ClassPathResource("json/currency.json").getContentAsByteArray());
+        MOCK_SERVER
+            .when(
+                request()
+                    .withMethod("GET")
+                    .withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH)
+                    .withHeader(HttpHeaders.ACCEPT, WireFormat.SMILE_VALUE + ".*"))
+            .respond(
+                response()
+                    .withHeader("Content-Type", WireFormat.SMILE_VALUE)
+                    .withBody(jsonCodecs.getExchangeResponseWriter(WireFormat.SMILE).writeValueAsBytes(currencies)));
+
+        mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+               .andExpect(status().isOk())
+               .andExpect(content().contentTypeCompatibleWith("application/json"))
+               .andExpect(jsonPath("$.data.total").value(27))
+               .andExpect(jsonPath("$.records[0].date").value("2025-04-09"))
+               .andExpect(jsonPath("$.records[0].values[1]").value("7.9620"));
+    }
+
+    @Test
+    void shouldReuseLastBody_whenUpstreamReturnsNotModified() throws Exception {
+
+        MOCK_SERVER
+            .when(
+                request()
+                    .withMethod("GET")
+                    .withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH)
+                    .withHeader(HttpHeaders.IF_NONE_MATCH, "\"v2\""))
+            .respond(
+                response()
+                    .withStatusCode(304)
+                    .withHeader(HttpHeaders.ETAG, "\"v2\""));
+        MOCK_SERVER
+            .when(
+                request()
+                    .withMethod("GET")
+                    .withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH))
+            .respond(
+                response()
+                    .withHeader("Content-Type", "application/json")
+                    .withHeader(HttpHeaders.ETAG, "\"v2\"")
+                    .withBody(EXCHANGE_RESPONSE_JSON));
+
+        mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+               .andExpect(status().isOk())
+               .andExpect(header().string(HttpHeaders.ETAG, "\"v2\""))
+               .andExpect(jsonPath("$.data.total").value(1));
+        mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.records[0].values[0]").value("7.2066"));
+        mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH)
+                   .header(HttpHeaders.IF_NONE_MATCH, "\"v2\""))
+               .andExpect(status().isNotModified());
+
+        MOCK_SERVER.verify(
+            request().withMethod("GET").withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH)
+                .withHeader(HttpHeaders.IF_NONE_MATCH, "\"v2\""), exactly(2));
+    }
+
+    @Test
+    void shouldServeStaleBody_whenUpstreamFails() throws Exception {
+
+        MOCK_SERVER
+            .when(
+                request()
+                    .withMethod("GET")
+                    .withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH),
+                Times.once())
+            .respond(
+                response()
+                    .withHeader("Content-Type", "application/json")
+                    .withBody(EXCHANGE_RESPONSE_JSON));
+        MOCK_SERVER
+            .when(
+                request()
+                    .withMethod("GET")
+                    .withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH))
+            .respond(
+                response()
+                    .withStatusCode(500));
+        double staleBefore = meterRegistry.get("currency.client.cache.requests").tag("result", "stale")
+            .functionCounter().count();
+
+        mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.data.total").value(1));
+        mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.records[0].values[0]").value("7.2066"));
+
+        assertThat(meterRegistry.get("currency.client.cache.requests").tag("result", "stale")
+            .functionCounter().count()).isEqualTo(staleBefore + 1);
+        MOCK_SERVER.verify(
+            request().withMethod("GET").withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH), exactly(2));
+    }
+
+    @Test
+    void shouldReturnInternalServerError_whenUpstreamFailsAndNothingCached() throws Exception {
+
+        MOCK_SERVER
+            .when(
+                request()
+                    .withMethod("GET")
+                    .withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH))
+            .respond(
+                response()
+                    .withStatusCode(500));
+
+        long errorBefore = upstreamRequests("error");
+
+        mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+               .andExpect(status().isInternalServerError());
+
+        assertThat(upstreamRequests("error")).isEqualTo(errorBefore + 1);
+    }
+
+    @Test
+    void shouldReturnNotFound_whenUpstreamReturnsNotFound() throws Exception {
+
+        MOCK_SERVER
+            .when(
+                request()
+                    .withMethod("GET")
+                    .withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH))
+            .respond(
+                response()
+                    .withStatusCode(404));
+        long notFoundBefore = upstreamRequests("not_found");
+
+        mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+               .andExpect(status().isNotFound());
+
+        assertThat(upstreamRequests("not_found")).isEqualTo(notFoundBefore + 1);
+    }
+
+    @Test
+    void shouldCountUpstreamTimeout_whenUpstreamRespondsAfterReadTimeout() throws Exception {
+
+        MOCK_SERVER
+            .when(
+                request()
+                    .withMethod("GET")
+                    .withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH))
+            .respond(
+                response()
+                    .withDelay(new Delay(TimeUnit.SECONDS, 2))
+                    .withHeader("Content-Type", "application/json")
+                    .withBody(EXCHANGE_RESPONSE_JSON));
+        long timeoutBefore = upstreamRequests("timeout");
+
+        mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+               .andExpect(status().isInternalServerError());
+
+        assertThat(upstreamRequests("timeout")).isEqualTo(timeoutBefore + 1);
+    }
+
+    @Test
+    void shouldMergeAllPagesInOrder_whenUpstreamHasSeveralPages() throws Exception {
+
+        for (int pageNum = 1; pageNum <= 3; pageNum++) {
+            MOCK_SERVER
+                .when(
+                    request()
+                        .withMethod("GET")
+                        .withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH)
+                        .withQueryStringParameter("pageNum", String.valueOf(pageNum)))
+                .respond(
+                    response()
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader(HttpHeaders.ETAG, "\"v1\"")
+                        .withBody("""
+                            {
+                              "head": { "version": "2.0" },
+                              "data": { "total": 5, "pageNum": %d, "pageSize": 2, "pageTotal": 3,
+                                        "searchlist": ["USD/CNY"] },
+                              "records": [ %s ]
+                            }
+                            """.formatted(pageNum, switch (pageNum) {
+                                case 1 -> "{ \"date\": \"2025-04-09\", \"values\": [\"7.2066\"] }, "
+                                        + "{ \"date\": \"2025-04-08\", \"values\": [\"7.2038\"] }";
+                                case 2 -> "{ \"date\": \"2025-04-07\", \"values\": [\"7.1980\"] }, "
+                                        + "{ \"date\": \"2025-04-03\", \"values\": [\"7.1889\"] }";
+                                default -> "{ \"date\": \"2025-04-02\", \"values\": [\"7.1793\"] }";
+                            })));
+        }
+
+        mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.data.total").value(5))
+               .andExpect(jsonPath("$.data.pageTotal").value(1))
+               .andExpect(jsonPath("$.records.length()").value(5))
+               .andExpect(jsonPath("$.records[0].date").value("2025-04-09"))
+               .andExpect(jsonPath("$.records[2].date").value("2025-04-07"))
+               .andExpect(jsonPath("$.records[4].date").value("2025-04-02"));
+
+        MOCK_SERVER.verify(
+            request().withMethod("GET").withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH), exactly(3));
+    }
+
+    @Test
+    void shouldReturnInternalServerError_whenPagesComeFromDifferentVersions() throws Exception {
+
+        for (int pageNum = 1; pageNum <= 2; pageNum++) {
+            MOCK_SERVER
+                .when(
+                    request()
+                        .withMethod("GET")
+                        .withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH)
+                        .withQueryStringParameter("pageNum", String.valueOf(pageNum)))
+                .respond(
+                    response()
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader(HttpHeaders.ETAG, "\"v" + pageNum + "\"")
+                        .withBody("""
+                            {
+                              "data": { "total": 2, "pageNum": %d, "pageSize": 1, "pageTotal": 2 },
+                              "records": [ { "date": "2025-04-09", "values": ["7.2066"] } ]
+                            }
+                            """.formatted(pageNum)));
+        }
+
+        mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+               .andExpect(status().isInternalServerError());
+    }
+
+    private long upstreamRequests(String result) {
+        Timer timer = meterRegistry.find("http.client.requests").tag("result", result).timer();
+        return timer != null ? timer.count() : 0;
     }
 }
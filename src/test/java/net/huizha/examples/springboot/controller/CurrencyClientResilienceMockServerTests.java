@@ -0,0 +1,186 @@
+package net.huizha.examples.springboot.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+import static org.mockserver.verify.VerificationTimes.exactly;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.matchers.Times;
+import org.mockserver.model.Delay;
+import org.mockserver.model.HttpResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.huizha.examples.springboot.TestConstants;
+
+/**
+ * The circuit breaker, adaptive timeout and hedging of the currency client against a failing or slow MockServer. Each
+ * test starts with a closed circuit and no observed latencies.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+class CurrencyClientResilienceMockServerTests {
+
+    private static final ClientAndServer MOCK_SERVER = startClientAndServer(0);
+
+    private static final int MIN_SAMPLES = 3;
+
+    private static final String EXCHANGE_RESPONSE_JSON = """
+        {
+          "head": { "version": "2.0", "provider": "CWAP", "rep_code": "200" },
+          "data": { "total": 1, "searchlist": ["USD/CNY"] },
+          "records": [ { "date": "2025-04-09", "values": ["7.2066"] } ]
+        }
+        """;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void resetExpectations() {
+        MOCK_SERVER.reset();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        MOCK_SERVER.stop();
+    }
+
+    @DynamicPropertySource
+    static void registerBaseUrl(DynamicPropertyRegistry registry) {
+        registry.add("api.base-url", () -> "http://localhost:" + MOCK_SERVER.getLocalPort() + "/api/v1");
+        registry.add("currency.client.cache.ttl", () -> "PT0S");
+        registry.add("http.client.read-timeout", () -> "PT2S");
+        registry.add("currency.client.circuit-breaker.failure-window", () -> "2");
+        registry.add("currency.client.circuit-breaker.minimum-calls", () -> "2");
+        registry.add("currency.client.circuit-breaker.open-duration", () -> "PT0.5S");
+        registry.add("currency.client.timeout.min-samples", () -> String.valueOf(MIN_SAMPLES));
+        registry.add("currency.client.timeout.min", () -> "PT0.2S");
+        registry.add("currency.client.hedging.enabled", () -> "true");
+    }
+
+    @Test
+    void shouldFailFastWithServiceUnavailable_whenCircuitOpen() throws Exception {
+        upstreamResponds(response().withStatusCode(500), Times.unlimited());
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+                   .andExpect(status().isInternalServerError());
+        }
+        mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+               .andExpect(status().isServiceUnavailable());
+
+        MOCK_SERVER.verify(
+            request().withMethod("GET").withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH), exactly(2));
+        assertThat(meterRegistry.get("currency.client.upstream.rejections").tag("reason", "circuit_open")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("currency.client.upstream.circuit.state").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldServeStaleBodyWithoutCallingUpstream_whenCircuitOpen() throws Exception {
+        upstreamResponds(jsonResponse(), Times.once());
+        upstreamResponds(response().withStatusCode(500), Times.unlimited());
+
+        for (int i = 0; i < 4; i++) {
+            mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+                   .andExpect(status().isOk())
+                   .andExpect(jsonPath("$.records[0].values[0]").value("7.2066"));
+        }
+
+        // One success and one failure open the circuit; the other reads do not reach the upstream
+        MOCK_SERVER.verify(
+            request().withMethod("GET").withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH), exactly(2));
+    }
+
+    @Test
+    void shouldCloseCircuit_whenProbeSucceedsAfterOpenDuration() throws Exception {
+        upstreamResponds(response().withStatusCode(500), Times.exactly(2));
+        upstreamResponds(jsonResponse(), Times.unlimited());
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+                   .andExpect(status().isInternalServerError());
+        }
+        mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+               .andExpect(status().isServiceUnavailable());
+
+        Thread.sleep(600);
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+                   .andExpect(status().isOk());
+        }
+        assertThat(meterRegistry.get("currency.client.upstream.circuit.state").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldGiveUpBeforeReadTimeout_whenUpstreamSlowerThanObservedLatency() throws Exception {
+        upstreamResponds(jsonResponse(), Times.exactly(MIN_SAMPLES));
+        upstreamResponds(jsonResponse().withDelay(new Delay(TimeUnit.MILLISECONDS, 1500)), Times.unlimited());
+        for (int i = 0; i < MIN_SAMPLES; i++) {
+            mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH)).andExpect(status().isOk());
+        }
+        long started = System.nanoTime();
+
+        // The abandoned call is answered with the stale body
+        mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+               .andExpect(status().isOk());
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(1));
+        assertThat(meterRegistry.get("currency.client.upstream.timeouts").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReturnHedgedResponse_whenFirstRequestIsSlow() throws Exception {
+        upstreamResponds(jsonResponse(), Times.exactly(MIN_SAMPLES));
+        upstreamResponds(jsonResponse().withDelay(new Delay(TimeUnit.MILLISECONDS, 1500)), Times.once());
+        upstreamResponds(jsonResponse(), Times.unlimited());
+        for (int i = 0; i < MIN_SAMPLES; i++) {
+            mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH)).andExpect(status().isOk());
+        }
+        long started = System.nanoTime();
+
+        mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.records[0].values[0]").value("7.2066"));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(1));
+        assertThat(meterRegistry.get("currency.client.upstream.hedges").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("currency.client.upstream.timeouts").functionCounter().count()).isZero();
+    }
+
+    private static HttpResponse jsonResponse() {
+        return response().withHeader("Content-Type", "application/json").withBody(EXCHANGE_RESPONSE_JSON);
+    }
+
+    private static void upstreamResponds(HttpResponse response, Times times) {
+        MOCK_SERVER
+            .when(
+                request()
+                    .withMethod("GET")
+                    .withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH),
+                times)
+            .respond(response);
+    }
+}
@@ -0,0 +1,70 @@
+package net.huizha.examples.springboot.controller;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import net.huizha.examples.springboot.TestConstants;
+
+/**
+ * The currency client against the currency server of the same application over HTTP, so pages come with the
+ * server's own ETags and compression.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.DEFINED_PORT)
+@AutoConfigureMockMvc
+class CurrencyClientServerRoundTripTests {
+
+    private static final int PORT = freePort();
+
+    // 27 records: three pages of 8 records, gzipped by the server, and a last one of 3 below min-response-size
+    private static final String PAGE_SIZE = "8";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void registerBaseUrl(DynamicPropertyRegistry registry) {
+        registry.add("server.port", () -> PORT);
+        registry.add("api.base-url", () -> "http://localhost:" + PORT + "/api/v1");
+        registry.add("currency.client.page-size", () -> PAGE_SIZE);
+        registry.add("currency.client.prefer-smile", () -> "false");
+    }
+
+    @Test
+    void shouldMergeGzippedAndPlainPages() throws Exception {
+        mockMvc.perform(get("/currency-server/currencies").param("pageNum", "1").param("pageSize", PAGE_SIZE)
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"));
+        mockMvc.perform(get("/currency-server/currencies").param("pageNum", "4").param("pageSize", PAGE_SIZE)
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+
+        mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_GET_CURRENCIES_PATH))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.total").value(27))
+                .andExpect(jsonPath("$.records.length()").value(27))
+                .andExpect(jsonPath("$.records[26].date").value("2025-03-03"));
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,17 +1,32 @@
 package net.huizha.examples.springboot.controller;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.endsWith;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.huizha.examples.springboot.model.currency.ExchangeResponse;
+import net.huizha.examples.springboot.util.JsonCodecs;
+import net.huizha.examples.springboot.util.JsonUtil;
+import net.huizha.examples.springboot.util.WireFormat;
+
 @SpringBootTest
 @AutoConfigureMockMvc
 class CurrencyServerControllerTests {
@@ -19,6 +34,12 @@ class CurrencyServerControllerTests {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private JsonCodecs jsonCodecs;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     // ─────────────────── Success path ───────────────────
     @Test
     void getCurrencyData_should_returnExchangeResponse_whenFileExists() throws Exception {
@@ -27,4 +48,246 @@ class CurrencyServerControllerTests {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.data.total").value(27));
     }
+
+    // ─────────────────── Conditional GET ───────────────────
+    @Test
+    void getCurrencyData_should_returnNotModified_whenETagMatches() throws Exception {
+        String etag = mockMvc.perform(get("/currency-server/currencies"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/currency-server/currencies").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void getCurrencyData_should_returnNotModified_whenNotModifiedSinceTimestamp() throws Exception {
+        // ts of json/currency.json is 2025-04-13T14:27:44.742Z
+        mockMvc.perform(get("/currency-server/currencies")
+                        .header(HttpHeaders.IF_MODIFIED_SINCE, "Sun, 13 Apr 2025 14:27:44 GMT"))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/currency-server/currencies")
+                        .header(HttpHeaders.IF_MODIFIED_SINCE, "Sun, 13 Apr 2025 14:27:43 GMT"))
+                .andExpect(status().isOk());
+    }
+
+    // ─────────────────── Compression ───────────────────
+    @Test
+    void getCurrencyData_should_returnPrecompressedBody_whenGzipAccepted() throws Exception {
+        MockHttpServletResponse plain = mockMvc.perform(get("/currency-server/currencies"))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andReturn().getResponse();
+        MockHttpServletResponse gzip = mockMvc.perform(get("/currency-server/currencies")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING))
+                .andReturn().getResponse();
+
+        assertThat(gzip.getContentAsByteArray().length).isLessThan(plain.getContentAsByteArray().length / 2);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.getContentAsByteArray()))) {
+            assertThat(in.readAllBytes()).isEqualTo(plain.getContentAsByteArray());
+        }
+        String plainETag = plain.getHeader(HttpHeaders.ETAG);
+        String gzipETag = gzip.getHeader(HttpHeaders.ETAG);
+        assertThat(gzipETag).isEqualTo(plainETag.substring(0, plainETag.length() - 1) + "-gzip\"");
+        mockMvc.perform(get("/currency-server/currencies").header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                        .header(HttpHeaders.IF_NONE_MATCH, gzipETag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getCurrencyData_should_returnPrecompressedPage_whenGzipAccepted() throws Exception {
+        MockHttpServletResponse gzip = mockMvc.perform(get("/currency-server/currencies").param("pageNum", "1")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.ETAG, endsWith("-gzip\"")))
+                .andReturn().getResponse();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.getContentAsByteArray()))) {
+            assertThat(objectMapper.readTree(in).at("/data/pageNum").asInt()).isEqualTo(1);
+        }
+        mockMvc.perform(get("/currency-server/currencies").param("pageNum", "1")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                        .header(HttpHeaders.IF_NONE_MATCH, gzip.getHeader(HttpHeaders.ETAG)))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/currency-server/currencies").param("pageNum", "1")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip").header(HttpHeaders.IF_NONE_MATCH, "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues(HttpHeaders.ETAG, gzip.getHeader(HttpHeaders.ETAG)));
+        // Below server.compression.min-response-size
+        mockMvc.perform(get("/currency-server/currencies").param("pageSize", "1")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    // ─────────────────── Smile ───────────────────
+    @Test
+    void getCurrencyData_should_returnSmile_whenSmileAccepted() throws Exception {
+        MockHttpServletResponse json = mockMvc.perform(get("/currency-server/currencies"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+        MockHttpServletResponse smile = mockMvc.perform(get("/currency-server/currencies")
+                        .header(HttpHeaders.ACCEPT, WireFormat.SMILE_VALUE + ", application/json;q=0.9"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(WireFormat.SMILE_VALUE))
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse();
+
+        ExchangeResponse fromSmile = jsonCodecs.getExchangeResponseReader(WireFormat.SMILE)
+                .readValue(smile.getContentAsByteArray());
+        assertThat(fromSmile).isEqualTo(jsonCodecs.getExchangeResponseReader().readValue(json.getContentAsByteArray()));
+        assertThat(smile.getContentAsByteArray().length).isLessThan(json.getContentAsByteArray().length);
+        String smileETag = smile.getHeader(HttpHeaders.ETAG);
+        assertThat(smileETag).isEqualTo(WireFormat.variantETag(json.getHeader(HttpHeaders.ETAG), "smile"));
+        mockMvc.perform(get("/currency-server/currencies").header(HttpHeaders.ACCEPT, WireFormat.SMILE_VALUE)
+                        .header(HttpHeaders.IF_NONE_MATCH, smileETag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getCurrencyData_should_returnSmilePage_whenSmileAccepted() throws Exception {
+        byte[] page = mockMvc.perform(get("/currency-server/currencies").param("pageNum", "3").param("pageSize", "10")
+                        .header(HttpHeaders.ACCEPT, WireFormat.SMILE_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(WireFormat.SMILE_VALUE))
+                .andExpect(header().string(HttpHeaders.ETAG, endsWith("-smile\"")))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        ExchangeResponse response = jsonCodecs.getExchangeResponseReader(WireFormat.SMILE).readValue(page);
+        assertThat(response.getData().getPageNum()).isEqualTo(3);
+        assertThat(response.getRecords()).hasSize(7);
+    }
+
+    @Test
+    void getCurrencyData_should_returnJson_whenSmileNotPreferred() throws Exception {
+        mockMvc.perform(get("/currency-server/currencies").header(HttpHeaders.ACCEPT, "*/*"))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+        mockMvc.perform(get("/currency-server/currencies")
+                        .header(HttpHeaders.ACCEPT, "application/json, " + WireFormat.SMILE_VALUE + ";q=0.5"))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
+
+    // ─────────────────── Paging ───────────────────
+    @Test
+    void getCurrencyData_should_returnPageOfRecords_whenPageRequested() throws Exception {
+        mockMvc.perform(get("/currency-server/currencies").param("pageNum", "3").param("pageSize", "10"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.data.total").value(27))
+                .andExpect(jsonPath("$.data.pageNum").value(3))
+                .andExpect(jsonPath("$.data.pageSize").value(10))
+                .andExpect(jsonPath("$.data.pageTotal").value(3))
+                .andExpect(jsonPath("$.records.length()").value(7))
+                .andExpect(jsonPath("$.records[6].date").value("2025-03-03"));
+        mockMvc.perform(get("/currency-server/currencies").param("pageNum", "4").param("pageSize", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.records.length()").value(0));
+    }
+
+    @Test
+    void getCurrencyData_should_returnNotModifiedPage_whenETagMatches() throws Exception {
+        String etag = mockMvc.perform(get("/currency-server/currencies").param("pageNum", "2").param("pageSize", "10"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/currency-server/currencies").param("pageNum", "2").param("pageSize", "10")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/currency-server/currencies").param("pageNum", "2").param("pageSize", "10")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues(HttpHeaders.ETAG, etag));
+        mockMvc.perform(get("/currency-server/currencies").param("pageNum", "2").param("pageSize", "10")
+                        .header(HttpHeaders.IF_MODIFIED_SINCE, "Sun, 13 Apr 2025 14:27:44 GMT"))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getCurrencyData_should_returnBadRequest_whenPageInvalid() throws Exception {
+        mockMvc.perform(get("/currency-server/currencies").param("pageNum", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/currency-server/currencies").param("pageSize", "-1"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // ─────────────────── Rate queries ───────────────────
+    @Test
+    void getRates_should_returnDailyRates_whenNoRangeOrWindowGiven() throws Exception {
+        mockMvc.perform(get("/currency-server/rates").param("pair", "USD/CNY"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.from").value("2025-03-03"))
+                .andExpect(jsonPath("$.to").value("2025-04-09"))
+                .andExpect(jsonPath("$.windows.length()").value(27))
+                .andExpect(jsonPath("$.windows[26].from").value("2025-04-09"))
+                .andExpect(jsonPath("$.windows[26].avg").value(7.2066));
+    }
+
+    @Test
+    void getRates_should_returnWindowAggregates_whenWindowGiven() throws Exception {
+        mockMvc.perform(get("/currency-server/rates").param("pair", "USD/CNY")
+                        .param("from", "2025-03-03").param("to", "2025-03-16").param("window", "7"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.windows.length()").value(2))
+                .andExpect(jsonPath("$.windows[0].to").value("2025-03-09"))
+                .andExpect(jsonPath("$.windows[0].count").value(5))
+                .andExpect(jsonPath("$.windows[0].min").value(7.1692))
+                .andExpect(jsonPath("$.windows[0].max").value(7.1745))
+                .andExpect(jsonPath("$.windows[1].count").value(5))
+                .andExpect(jsonPath("$.windows[1].max").value(7.1741));
+    }
+
+    @Test
+    void getRates_should_returnSmileWithItsOwnETag_whenSmileAccepted() throws Exception {
+        MockHttpServletResponse json = mockMvc.perform(get("/currency-server/rates").param("pair", "USD/CNY"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse();
+        MockHttpServletResponse smile = mockMvc.perform(get("/currency-server/rates").param("pair", "USD/CNY")
+                        .header(HttpHeaders.ACCEPT, WireFormat.SMILE_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(WireFormat.SMILE_VALUE))
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse();
+
+        assertThat(JsonUtil.smile(objectMapper).readTree(smile.getContentAsByteArray()))
+                .isEqualTo(objectMapper.readTree(json.getContentAsByteArray()));
+        String smileETag = smile.getHeader(HttpHeaders.ETAG);
+        assertThat(smileETag).isEqualTo(WireFormat.variantETag(json.getHeader(HttpHeaders.ETAG), "smile"));
+        mockMvc.perform(get("/currency-server/rates").param("pair", "USD/CNY")
+                        .header(HttpHeaders.ACCEPT, WireFormat.SMILE_VALUE)
+                        .header(HttpHeaders.IF_NONE_MATCH, smileETag))
+                .andExpect(status().isNotModified());
+        // A JSON client never matches the Smile representation
+        mockMvc.perform(get("/currency-server/rates").param("pair", "USD/CNY")
+                        .header(HttpHeaders.IF_NONE_MATCH, smileETag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void getRates_should_returnNotFound_whenPairUnknown() throws Exception {
+        mockMvc.perform(get("/currency-server/rates").param("pair", "XXX/CNY"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getRates_should_returnBadRequest_whenRangeOrWindowInvalid() throws Exception {
+        mockMvc.perform(get("/currency-server/rates").param("pair", "USD/CNY")
+                        .param("from", "2025-04-01").param("to", "2025-03-01"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/currency-server/rates").param("pair", "USD/CNY").param("window", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/currency-server/rates").param("pair", "USD/CNY").param("from", "yesterday"))
+                .andExpect(status().isBadRequest());
+    }
 }
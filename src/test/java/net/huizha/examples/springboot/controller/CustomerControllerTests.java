@@ -1,21 +1,39 @@
 package net.huizha.examples.springboot.controller;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.json.JsonCompareMode;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import net.huizha.examples.springboot.model.customer.CustomerDto;
 import net.huizha.examples.springboot.util.JsonUtil;
+import net.huizha.examples.springboot.util.WireFormat;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -25,6 +43,9 @@ class CustomerControllerTests {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Test
     void postCustomers_should_createCustomer_whenRequestIsValid() throws Exception {
         mockMvc.perform(post("/customers").contentType(MediaType.APPLICATION_JSON)
@@ -43,4 +64,211 @@ class CustomerControllerTests {
                 .andExpect(status().isOk()).andExpect(jsonPath("$.id").value(1))
                 .andExpect(jsonPath("$.firstName").value("Ming")).andExpect(jsonPath("$.lastName").value("Li"));
     }
+
+    @Test
+    void getCustomers_should_returnPageWithNextLink_whenMoreCustomersExist() throws Exception {
+        createCustomer("Ming", "Li");
+        createCustomer("Hong", "Wang");
+        createCustomer("Mei", "Li");
+        mockMvc.perform(get("/customers").param("limit", "2")).andDo(print())
+                .andExpect(status().isOk()).andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(1)).andExpect(jsonPath("$[1].id").value(2))
+                .andExpect(header().string("Link", endsWith("/customers?afterId=2&limit=2>; rel=\"next\"")));
+        mockMvc.perform(get("/customers").param("afterId", "2").param("limit", "2")).andDo(print())
+                .andExpect(status().isOk()).andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(3)).andExpect(header().doesNotExist("Link"));
+    }
+
+    @Test
+    void getCustomers_should_returnSmile_whenSmileAccepted() throws Exception {
+        createCustomer("Ming", "Li");
+        createCustomer("Hong", "Wang");
+        byte[] smile = mockMvc.perform(get("/customers").accept(WireFormat.SMILE_VALUE))
+                .andExpect(status().isOk()).andExpect(content().contentType(WireFormat.SMILE_VALUE))
+                .andReturn().getResponse().getContentAsByteArray();
+        List<CustomerDto> customers = JsonUtil.smile(objectMapper).readValue(smile, new TypeReference<>() {
+        });
+        assertThat(customers).extracting(CustomerDto::getFirstName).containsExactly("Ming", "Hong");
+        mockMvc.perform(get("/customers")).andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void getCustomers_should_returnBadRequest_whenLimitIsNotPositive() throws Exception {
+        mockMvc.perform(get("/customers").param("limit", "0")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void streamCustomers_should_writeOneJsonLinePerCustomer() throws Exception {
+        createCustomer("Ming", "Li");
+        createCustomer("Hong", "Wang");
+        MvcResult mvcResult = mockMvc.perform(get("/customers/stream")).andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult)).andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"id\":1,\"firstName\":\"Ming\",\"lastName\":\"Li\"}\n"
+                        + "{\"id\":2,\"firstName\":\"Hong\",\"lastName\":\"Wang\"}\n"));
+    }
+
+    @Test
+    void postCustomersBatch_should_createValidCustomersAndReportFailures_whenJsonArrayGiven() throws Exception {
+        mockMvc.perform(post("/customers/batch").contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"firstName\":\"Ming\",\"lastName\":\"Li\"},{\"firstName\":\"\",\"lastName\":\"Li\"},"
+                        + "{\"firstName\":\"Hong\",\"lastName\":\"Wang\"}]"))
+                .andDo(print()).andExpect(status().isOk()).andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.failures.length()").value(1))
+                .andExpect(jsonPath("$.failures[0].index").value(1))
+                .andExpect(jsonPath("$.failures[0].message").value("firstName: must not be blank"));
+        mockMvc.perform(get("/customers")).andExpect(status().isOk()).andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].firstName").value("Hong"));
+    }
+
+    @Test
+    void postCustomersBatch_should_createCustomers_whenNdjsonGiven() throws Exception {
+        mockMvc.perform(post("/customers/batch").contentType(MediaType.APPLICATION_NDJSON)
+                .content("{\"firstName\":\"Ming\",\"lastName\":\"Li\"}\n{\"firstName\":\"Hong\",\"lastName\":\"Wang\"}\n"))
+                .andDo(print()).andExpect(status().isOk()).andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.failures.length()").value(0));
+    }
+
+    @Test
+    void postCustomersBatch_should_returnBadRequest_whenNdjsonIsMalformed() throws Exception {
+        mockMvc.perform(post("/customers/batch").contentType(MediaType.APPLICATION_NDJSON)
+                .content("{\"firstName\":\"Ming\",\"lastName\":\"Li\"}\n{\"firstName\":"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void suggestNames_should_returnMatchingFirstAndLastNames() throws Exception {
+        createCustomer("Ming", "Li");
+        createCustomer("Hong", "Lin");
+        createCustomer("Lily", "Wang");
+        mockMvc.perform(get("/customers/suggest").param("prefix", "Li")).andDo(print()).andExpect(status().isOk())
+                .andExpect(content().json("[\"Li\",\"Lily\",\"Lin\"]", JsonCompareMode.STRICT));
+        mockMvc.perform(get("/customers/suggest").param("prefix", "Li").param("limit", "2"))
+                .andExpect(status().isOk()).andExpect(content().json("[\"Li\",\"Lily\"]", JsonCompareMode.STRICT));
+    }
+
+    @Test
+    void suggestNames_should_returnBadRequest_whenPrefixIsBlank() throws Exception {
+        mockMvc.perform(get("/customers/suggest").param("prefix", " ")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getCustomerById_should_returnVersionAsETag_andNotModifiedWhenItMatches() throws Exception {
+        createCustomer("Ming", "Li");
+        mockMvc.perform(get("/customers/1")).andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""));
+        mockMvc.perform(get("/customers/1").header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getCustomerById_should_returnSmileWithItsOwnETag_whenSmileAccepted() throws Exception {
+        createCustomer("Ming", "Li");
+        byte[] smile = mockMvc.perform(get("/customers/1").accept(WireFormat.SMILE_VALUE))
+                .andExpect(status().isOk()).andExpect(content().contentType(WireFormat.SMILE_VALUE))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0-smile\""))
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(JsonUtil.smile(objectMapper).readValue(smile, CustomerDto.class).getFirstName()).isEqualTo("Ming");
+        mockMvc.perform(get("/customers/1")).andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+        mockMvc.perform(get("/customers/1").accept(WireFormat.SMILE_VALUE)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")).andExpect(status().isOk());
+        mockMvc.perform(get("/customers/1").accept(WireFormat.SMILE_VALUE)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0-smile\"")).andExpect(status().isNotModified());
+
+        // Either ETag names the version being replaced
+        String body = JsonUtil.asJsonString(CustomerDto.builder().firstName("Lei").lastName("Li").build());
+        mockMvc.perform(put("/customers/1").contentType(MediaType.APPLICATION_JSON).content(body)
+                .accept(WireFormat.SMILE_VALUE).header(HttpHeaders.IF_MATCH, "\"0-smile\""))
+                .andExpect(status().isOk()).andExpect(content().contentType(WireFormat.SMILE_VALUE))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1-smile\""));
+        String otherBody = JsonUtil.asJsonString(CustomerDto.builder().firstName("Lei").lastName("Wang").build());
+        mockMvc.perform(put("/customers/1").contentType(MediaType.APPLICATION_JSON).content(otherBody)
+                .header(HttpHeaders.IF_MATCH, "\"1\"")).andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""));
+        mockMvc.perform(put("/customers/1").contentType(MediaType.APPLICATION_JSON).content(body)
+                .header(HttpHeaders.IF_MATCH, "\"1-smile\"")).andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void putCustomer_should_requireMatchingETag() throws Exception {
+        createCustomer("Ming", "Li");
+        String body = JsonUtil.asJsonString(CustomerDto.builder().firstName("Lei").lastName("Li").build());
+        mockMvc.perform(put("/customers/1").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isPreconditionRequired());
+        mockMvc.perform(put("/customers/1").contentType(MediaType.APPLICATION_JSON).content(body)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")).andDo(print())
+                .andExpect(status().isOk()).andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.firstName").value("Lei"));
+        // A second writer that also read version 0 must not overwrite the first
+        mockMvc.perform(put("/customers/1").contentType(MediaType.APPLICATION_JSON).content(body)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")).andExpect(status().isPreconditionFailed());
+        mockMvc.perform(put("/customers/1").contentType(MediaType.APPLICATION_JSON).content(body)
+                .header(HttpHeaders.IF_MATCH, "W/\"1\"")).andExpect(status().isPreconditionFailed());
+        String otherBody = JsonUtil.asJsonString(CustomerDto.builder().firstName("Lei").lastName("Wang").build());
+        mockMvc.perform(put("/customers/1").contentType(MediaType.APPLICATION_JSON).content(otherBody)
+                .header(HttpHeaders.IF_MATCH, "*")).andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""));
+        mockMvc.perform(put("/customers/2").contentType(MediaType.APPLICATION_JSON).content(body)
+                .header(HttpHeaders.IF_MATCH, "*")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void deleteCustomerById_should_returnNoContentThenNotFound() throws Exception {
+        createCustomer("Ming", "Li");
+        mockMvc.perform(delete("/customers/1")).andExpect(status().isNoContent());
+        mockMvc.perform(delete("/customers/1")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void deleteCustomers_should_reportDeletedCount_whenSomeCustomersExist() throws Exception {
+        createCustomer("Ming", "Li");
+        createCustomer("Hong", "Wang");
+        createCustomer("Mei", "Li");
+        mockMvc.perform(delete("/customers").param("ids", "1,3,3,4")).andDo(print())
+                .andExpect(status().isOk()).andExpect(jsonPath("$.requested").value(3))
+                .andExpect(jsonPath("$.affected").value(2));
+        mockMvc.perform(get("/customers")).andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(2));
+        mockMvc.perform(delete("/customers").param("ids", "1,3")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void deleteCustomers_should_returnBadRequest_whenIdsAreMissingOrMalformed() throws Exception {
+        mockMvc.perform(delete("/customers")).andExpect(status().isBadRequest());
+        mockMvc.perform(delete("/customers").param("ids", "1,x")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void patchCustomers_should_updateGivenNames_whenSomeCustomersExist() throws Exception {
+        createCustomer("Ming", "Li");
+        createCustomer("Hong", "Wang");
+        mockMvc.perform(patch("/customers").param("ids", "1,2,5").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"lastName\": \"Zhang\"}")).andDo(print())
+                .andExpect(status().isOk()).andExpect(jsonPath("$.requested").value(3))
+                .andExpect(jsonPath("$.affected").value(2));
+        mockMvc.perform(get("/customers")).andExpect(jsonPath("$[0].firstName").value("Ming"))
+                .andExpect(jsonPath("$[0].lastName").value("Zhang"))
+                .andExpect(jsonPath("$[1].lastName").value("Zhang"));
+        mockMvc.perform(patch("/customers").param("ids", "5").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"lastName\": \"Zhang\"}")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void patchCustomers_should_returnBadRequest_whenNoOrBlankNameGiven() throws Exception {
+        createCustomer("Ming", "Li");
+        mockMvc.perform(patch("/customers").param("ids", "1").contentType(MediaType.APPLICATION_JSON)
+                .content("{}")).andExpect(status().isBadRequest());
+        mockMvc.perform(patch("/customers").param("ids", "1").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"firstName\": \" \"}")).andExpect(status().isBadRequest());
+    }
+
+    private void createCustomer(String firstName, String lastName) throws Exception {
+        mockMvc.perform(post("/customers").contentType(MediaType.APPLICATION_JSON)
+                .content(JsonUtil.asJsonString(CustomerDto.builder().firstName(firstName).lastName(lastName).build())))
+                .andExpect(status().isCreated());
+    }
 }
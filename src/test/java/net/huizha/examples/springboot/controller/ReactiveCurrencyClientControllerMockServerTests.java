@@ -0,0 +1,171 @@
+package net.huizha.examples.springboot.controller;
+
+import static org.mockserver.integration.ClientAndServer.startClientAndServer;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+import static org.mockserver.verify.VerificationTimes.exactly;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.matchers.Times;
+import org.mockserver.model.Delay;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import lombok.extern.slf4j.Slf4j;
+import net.huizha.examples.springboot.TestConstants;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Slf4j
+class ReactiveCurrencyClientControllerMockServerTests {
+
+    private static final ClientAndServer MOCK_SERVER = startClientAndServer(0);
+
+    private static final String EXCHANGE_RESPONSE_JSON = """
+        {
+          "head": { "version": "2.0", "provider": "CWAP", "rep_code": "200" },
+          "data": { "total": 1, "searchlist": ["USD/CNY"] },
+          "records": [ { "date": "2025-04-09", "values": ["7.2066"] } ]
+        }
+        """;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeAll
+    static void logMockServer() {
+        LOGGER.info("MockServer running on: {}", MOCK_SERVER.getPort());
+    }
+
+    @BeforeEach
+    void resetExpectations() {
+        MOCK_SERVER.reset();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        MOCK_SERVER.stop();
+    }
+
+    @DynamicPropertySource
+    static void registerBaseUrl(DynamicPropertyRegistry registry) {
+        registry.add("api.base-url", () -> "http://localhost:" + MOCK_SERVER.getLocalPort() + "/api/v1");
+        registry.add("currency.client.reactive.timeout", () -> "PT0.5S");
+        registry.add("currency.client.reactive.retry.min-backoff", () -> "PT0.01S");
+    }
+
+    @Test
+    void shouldReturnExchangeResponse() throws Exception {
+
+        MOCK_SERVER
+            .when(
+                request()
+                    .withMethod("GET")
+                    .withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH))
+            .respond(
+                response()
+                    .withHeader("Content-Type", "application/json")
+                    .withBody(EXCHANGE_RESPONSE_JSON));
+
+        mockMvc.perform(asyncDispatch(performAsync()))
+               .andExpect(status().isOk())
+               .andExpect(content().contentTypeCompatibleWith("application/json"))
+               .andExpect(jsonPath("$.head.version").value("2.0"))
+               .andExpect(jsonPath("$.records[0].values[0]").value("7.2066"));
+    }
+
+    @Test
+    void shouldRetry_whenUpstreamReturnsServerError() throws Exception {
+
+        MOCK_SERVER
+            .when(
+                request()
+                    .withMethod("GET")
+                    .withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH),
+                Times.once())
+            .respond(
+                response()
+                    .withStatusCode(503));
+        MOCK_SERVER
+            .when(
+                request()
+                    .withMethod("GET")
+                    .withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH))
+            .respond(
+                response()
+                    .withHeader("Content-Type", "application/json")
+                    .withBody(EXCHANGE_RESPONSE_JSON));
+
+        mockMvc.perform(asyncDispatch(performAsync()))
+               .andExpect(status().isOk())
+               .andExpect(jsonPath("$.data.total").value(1));
+
+        MOCK_SERVER.verify(
+            request().withMethod("GET").withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH), exactly(2));
+    }
+
+    @Test
+    void shouldReturnNotFound_withoutRetry_whenUpstreamReturnsNotFound() throws Exception {
+
+        MOCK_SERVER
+            .when(
+                request()
+                    .withMethod("GET")
+                    .withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH))
+            .respond(
+                response()
+                    .withStatusCode(404));
+
+        mockMvc.perform(asyncDispatch(performAsync()))
+               .andExpect(status().isNotFound());
+
+        MOCK_SERVER.verify(
+            request().withMethod("GET").withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH), exactly(1));
+    }
+
+    @Test
+    void shouldReturnInternalServerError_whenUpstreamKeepsTimingOut() throws Exception {
+
+        MOCK_SERVER
+            .when(
+                request()
+                    .withMethod("GET")
+                    .withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH))
+            .respond(
+                response()
+                    .withDelay(Delay.delay(TimeUnit.SECONDS, 2))
+                    .withBody(EXCHANGE_RESPONSE_JSON));
+
+        mockMvc.perform(asyncDispatch(performAsync()))
+               .andExpect(status().isInternalServerError());
+
+        // The first attempt and two retries
+        MOCK_SERVER.verify(
+            request().withMethod("GET").withPath(TestConstants.CURRENCY_SERVER_GET_CURRENCIES_PATH), exactly(3));
+    }
+
+    private MvcResult performAsync() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(get(TestConstants.CURRENCY_CLIENT_REACTIVE_GET_CURRENCIES_PATH))
+                .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                .andReturn();
+        mvcResult.getAsyncResult(10_000);
+        return mvcResult;
+    }
+}
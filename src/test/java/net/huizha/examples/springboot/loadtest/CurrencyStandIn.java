@@ -0,0 +1,108 @@
+package net.huizha.examples.springboot.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.core.io.ClassPathResource;
+
+/**
+ * Lightweight stand-in for the currency server used by the load tests. It serves {@code json/currency.json} on any
+ * path after a fixed latency and answers a matching {@code If-None-Match} with 304. A fraction {@code errorRate} of
+ * the requests, chosen at random, is answered with 503 after the same latency. Every connection is served by its own
+ * virtual thread, so the stand-in never becomes the bottleneck.
+ */
+public class CurrencyStandIn implements AutoCloseable {
+
+    public static final String ETAG = "\"stand-in\"";
+
+    private final ServerSocket serverSocket;
+
+    private final byte[] body;
+
+    private final Duration latency;
+
+    private final double errorRate;
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder errors = new LongAdder();
+
+    public CurrencyStandIn(Duration latency) throws IOException {
+        this(latency, 0);
+    }
+
+    public CurrencyStandIn(Duration latency, double errorRate) throws IOException {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        try (InputStream inputStream = new ClassPathResource("json/currency.json").getInputStream()) {
+            this.body = inputStream.readAllBytes();
+        }
+        this.serverSocket = new ServerSocket(0, 10_000, InetAddress.getLoopbackAddress());
+        Thread.ofVirtual().name("currency-stand-in-acceptor").start(this::accept);
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + serverSocket.getLocalPort() + "/api/v1";
+    }
+
+    public long requestCount() {
+        return requests.sum();
+    }
+
+    public long injectedErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread.ofVirtual().start(() -> serve(socket));
+            } catch (IOException e) {
+                // Closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            RawHttp.Head request;
+            while ((request = RawHttp.readHead(in)) != null) {
+                RawHttp.readBody(in, request);
+                Thread.sleep(latency);
+                requests.increment();
+                if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                    errors.increment();
+                    out.write(RawHttp.ascii("HTTP/1.1 503 Service Unavailable\r\nContent-Length: 0\r\n\r\n"));
+                } else if (ETAG.equals(request.header("if-none-match"))) {
+                    out.write(RawHttp.ascii("HTTP/1.1 304 Not Modified\r\nETag: " + ETAG + "\r\n\r\n"));
+                } else {
+                    out.write(RawHttp.ascii("HTTP/1.1 200 OK\r\nETag: " + ETAG
+                            + "\r\nContent-Type: application/json\r\nContent-Length: " + body.length + "\r\n\r\n"));
+                    out.write(body);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Client went away
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package net.huizha.examples.springboot.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Random;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Shows what the name indexes of {@code V2__create_customer_name_indexes.sql} do for the {@code CustomerRepository}
+ * finders. It migrates a standalone HSQLDB to V1 (no secondary indexes), loads {@code loadtest.customer-rows}
+ * customers (default 1,000,000), runs the SQL Hibernate generates for each finder, then migrates to the latest version
+ * and runs it again. For every query and schema version the access path reported by {@code EXPLAIN PLAN} and the mean
+ * latency are appended to {@code target/load-test/customer-indexes.jsonl}.
+ * <p>
+ * Run with {@code mvn test -Pload-test -Dtest=CustomerIndexLoadTests}.
+ */
+@Tag("load")
+@Slf4j
+class CustomerIndexLoadTests {
+
+    private static final String URL = "jdbc:hsqldb:mem:customerIndexLoadTest";
+
+    private static final Path RESULT_FILE = Path.of("target", "load-test", "customer-indexes.jsonl");
+
+    private static final int ROWS = Integer.getInteger("loadtest.customer-rows", 1_000_000);
+
+    private static final int ITERATIONS = Integer.getInteger("loadtest.query-iterations", 20);
+
+    // Few enough distinct names that each lookup matches a realistic number of rows
+    private static final int FIRST_NAMES = 5_000;
+
+    private static final int LAST_NAMES = 2_000;
+
+    private static final String COLUMNS = "SELECT c1_0.id, c1_0.first_name, c1_0.last_name FROM customer c1_0 ";
+
+    private enum Finder {
+        FIND_BY_FIRST_NAME(COLUMNS + "WHERE c1_0.first_name = ?", "IDX_CUSTOMER_FIRST_NAME"),
+        FIND_BY_LAST_NAME_ORDER_BY_FIRST_NAME(COLUMNS + "WHERE c1_0.last_name = ? ORDER BY c1_0.first_name",
+                "IDX_CUSTOMER_LAST_NAME_FIRST_NAME"),
+        FIND_BY_FIRST_NAME_STARTING_WITH(COLUMNS + "WHERE c1_0.first_name LIKE ? ESCAPE '\\'",
+                "IDX_CUSTOMER_FIRST_NAME");
+
+        private final String sql;
+
+        private final String index;
+
+        Finder(String sql, String index) {
+            this.sql = sql;
+            this.index = index;
+        }
+    }
+
+    @Test
+    void measureFinders() throws Exception {
+        Files.createDirectories(RESULT_FILE.getParent());
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "")) {
+            migrate("1");
+            load(connection);
+            for (Finder finder : Finder.values()) {
+                String plan = measure(connection, finder, "1");
+                assertThat(plan).doesNotContain(finder.index);
+            }
+            migrate(null);
+            for (Finder finder : Finder.values()) {
+                String plan = measure(connection, finder, "2");
+                assertThat(plan).contains(finder.index);
+            }
+            connection.createStatement().execute("SHUTDOWN");
+        }
+    }
+
+    private static void migrate(String target) {
+        var configuration = Flyway.configure().dataSource(URL, "sa", "");
+        if (target != null) {
+            configuration.target(target);
+        }
+        configuration.load().migrate();
+    }
+
+    private static void load(Connection connection) throws SQLException {
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO customer (id, first_name, last_name) VALUES (?, ?, ?)")) {
+            for (int id = 1; id <= ROWS; id++) {
+                insert.setLong(1, id);
+                insert.setString(2, firstName(random.nextInt(FIRST_NAMES)));
+                insert.setString(3, lastName(random.nextInt(LAST_NAMES)));
+                insert.addBatch();
+                if (id % 10_000 == 0 || id == ROWS) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+        }
+        connection.setAutoCommit(true);
+        LOGGER.warn("Loaded {} customers in {} ms", ROWS, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static String measure(Connection connection, Finder finder, String schemaVersion)
+            throws SQLException, IOException {
+        Random random = new Random(7);
+        String plan = explain(connection, finder.sql);
+        long rows = 0;
+        long start = System.nanoTime();
+        try (PreparedStatement query = connection.prepareStatement(finder.sql)) {
+            for (int i = 0; i < ITERATIONS; i++) {
+                query.setString(1, switch (finder) {
+                    case FIND_BY_FIRST_NAME -> firstName(random.nextInt(FIRST_NAMES));
+                    case FIND_BY_LAST_NAME_ORDER_BY_FIRST_NAME -> lastName(random.nextInt(LAST_NAMES));
+                    case FIND_BY_FIRST_NAME_STARTING_WITH ->
+                        firstName(random.nextInt(FIRST_NAMES)).substring(0, 3) + "%";
+                });
+                try (ResultSet resultSet = query.executeQuery()) {
+                    while (resultSet.next()) {
+                        rows++;
+                    }
+                }
+            }
+        }
+        double meanMicros = (System.nanoTime() - start) / 1_000.0 / ITERATIONS;
+        String json = String.format(
+                "{\"finder\":\"%s\",\"schemaVersion\":\"%s\",\"rows\":%d,\"usesIndex\":%b,\"meanMicros\":%.1f,"
+                        + "\"meanRowsReturned\":%.1f}%n",
+                finder, schemaVersion, ROWS, plan.contains(finder.index), meanMicros, rows / (double) ITERATIONS);
+        LOGGER.warn("Index load test result: {}", json.trim());
+        Files.writeString(RESULT_FILE, json, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        return plan;
+    }
+
+    private static String explain(Connection connection, String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (ResultSet resultSet = connection.createStatement().executeQuery("EXPLAIN PLAN FOR " + sql)) {
+            while (resultSet.next()) {
+                plan.append(resultSet.getString(1)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+
+    // Base-26 spellings of the index keep the names distinct and give them shared prefixes
+    private static String firstName(int index) {
+        return "F" + spell(index);
+    }
+
+    private static String lastName(int index) {
+        return "L" + spell(index);
+    }
+
+    private static String spell(int index) {
+        StringBuilder name = new StringBuilder();
+        int remaining = index;
+        for (int i = 0; i < 4; i++) {
+            name.append((char) ('a' + remaining % 26));
+            remaining /= 26;
+        }
+        return name.toString();
+    }
+}
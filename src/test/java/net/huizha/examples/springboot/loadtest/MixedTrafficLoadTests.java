@@ -0,0 +1,316 @@
+package net.huizha.examples.springboot.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import net.huizha.examples.springboot.SpringBootExampleApplication;
+
+/**
+ * Drives a mix of customer CRUD and currency requests against the application on a random port. The currency client
+ * calls a {@link CurrencyStandIn} that answers after {@code loadtest.upstream-latency} (default 50ms) and fails
+ * {@code loadtest.upstream-error-rate} of the calls (default 0.05) with 503; its cache expires after
+ * {@code loadtest.currency-cache-ttl} (default PT1S), so the upstream keeps being called.
+ * <p>
+ * Before the run {@code loadtest.customers} customers (default 100,000) are created through {@code POST
+ * /customers/batch}. Then {@code loadtest.concurrency} closed-loop clients (default 64) each pick an operation at
+ * random, weighted by {@code loadtest.mix}, for {@code loadtest.warm-up} and then {@code loadtest.duration}. Reads and
+ * updates target the seeded customers, deletes only customers the same client created. Updates send
+ * {@code If-Match: *}.
+ * <p>
+ * One JSON object per run is appended to {@code target/load-test/mixed-traffic.jsonl}: the settings, the throughput
+ * and p50/p99/p999/max latency in microseconds of every operation, the upstream calls and the allocation rate and GC
+ * activity of the JVM. The driver shares the JVM with the application, so its own (small) allocation is included. As
+ * the clients wait for each response, latencies under overload understate what an open stream of users would see.
+ * <p>
+ * Run with {@code mvn test -Pload-test -Dtest=MixedTrafficLoadTests}.
+ */
+@Tag("load")
+@Slf4j
+class MixedTrafficLoadTests {
+
+    private static final String CUSTOMERS_PATH = "/api/v1/customers";
+
+    private static final Path RESULT_FILE = Path.of("target", "load-test", "mixed-traffic.jsonl");
+
+    private static final Duration DURATION = Duration.parse(System.getProperty("loadtest.duration", "PT20S"));
+
+    private static final Duration WARM_UP = Duration.parse(System.getProperty("loadtest.warm-up", "PT5S"));
+
+    private static final int CUSTOMERS = Integer.getInteger("loadtest.customers", 100_000);
+
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 64);
+
+    private static final Duration UPSTREAM_LATENCY =
+            Duration.parse(System.getProperty("loadtest.upstream-latency", "PT0.05S"));
+
+    private static final double UPSTREAM_ERROR_RATE =
+            Double.parseDouble(System.getProperty("loadtest.upstream-error-rate", "0.05"));
+
+    private static final Duration CURRENCY_CACHE_TTL =
+            Duration.parse(System.getProperty("loadtest.currency-cache-ttl", "PT1S"));
+
+    private static final String MIX =
+            System.getProperty("loadtest.mix", "get=40,list=10,create=10,update=10,delete=5,currencies=20,rates=5");
+
+    // Customers per POST /customers/batch while seeding
+    private static final int SEED_BATCH = 10_000;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final Map<String, String> JSON_HEADERS = Map.of("Content-Type", "application/json");
+
+    private static final Map<String, String> UPDATE_HEADERS =
+            Map.of("Content-Type", "application/json", "If-Match", "*");
+
+    private static final Map<String, String> NO_HEADERS = Map.of();
+
+    private enum Operation {
+        GET, LIST, CREATE, UPDATE, DELETE, CURRENCIES, RATES;
+
+        String key() {
+            return name().toLowerCase();
+        }
+    }
+
+    private record Stats(Histogram micros, LongAdder errors) {
+
+        Stats() {
+            this(new ConcurrentHistogram(3), new LongAdder());
+        }
+    }
+
+    @Test
+    void measureMixedTraffic() throws Exception {
+        Files.createDirectories(RESULT_FILE.getParent());
+        Map<Operation, Integer> weights = parseMix(MIX);
+        try (CurrencyStandIn upstream = new CurrencyStandIn(UPSTREAM_LATENCY, UPSTREAM_ERROR_RATE);
+                ConfigurableApplicationContext application = startApplication(upstream)) {
+            int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+            seed(port);
+            long[] seededIds = application.getBean(JdbcTemplate.class).queryForObject(
+                    "SELECT MIN(id), MAX(id) FROM customer", (rs, row) -> new long[] { rs.getLong(1), rs.getLong(2) });
+
+            drive(port, weights, seededIds, WARM_UP);
+            long upstreamRequests = upstream.requestCount();
+            long upstreamErrors = upstream.injectedErrorCount();
+            long allocatedBytes = allocatedBytes();
+            long[] gc = gcCountAndMillis();
+            long start = System.nanoTime();
+            Map<Operation, Stats> stats = drive(port, weights, seededIds, DURATION);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            allocatedBytes = allocatedBytes() - allocatedBytes;
+            long[] gcAfter = gcCountAndMillis();
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("customers", CUSTOMERS);
+            result.put("concurrency", CONCURRENCY);
+            result.put("mix", MIX);
+            result.put("upstreamLatencyMillis", UPSTREAM_LATENCY.toMillis());
+            result.put("upstreamErrorRate", UPSTREAM_ERROR_RATE);
+            result.put("durationSeconds", round(seconds));
+            long requests = stats.values().stream().mapToLong(s -> s.micros().getTotalCount()).sum();
+            long errors = stats.values().stream().mapToLong(s -> s.errors().sum()).sum();
+            result.put("requests", requests);
+            result.put("errors", errors);
+            result.put("throughputPerSecond", round(requests / seconds));
+            Map<String, Object> operations = new LinkedHashMap<>();
+            stats.forEach((operation, s) -> {
+                if (s.micros().getTotalCount() > 0) {
+                    operations.put(operation.key(), summary(s, seconds));
+                }
+            });
+            result.put("operations", operations);
+            result.put("upstreamRequests", upstream.requestCount() - upstreamRequests);
+            result.put("upstreamInjectedErrors", upstream.injectedErrorCount() - upstreamErrors);
+            result.put("allocationMBPerSecond", round(allocatedBytes / seconds / (1024 * 1024)));
+            result.put("gcCount", gcAfter[0] - gc[0]);
+            result.put("gcMillis", gcAfter[1] - gc[1]);
+            String json = MAPPER.writeValueAsString(result);
+            LOGGER.warn("Load test result: {}", json);
+            Files.writeString(RESULT_FILE, json + System.lineSeparator(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+            assertThat(requests).isPositive();
+            // Upstream failures are absorbed by the stale currency cache; only the very first load can surface them
+            for (Operation operation : new Operation[] { Operation.GET, Operation.LIST, Operation.CREATE,
+                    Operation.UPDATE, Operation.DELETE }) {
+                assertThat(stats.get(operation).errors().sum()).as(operation.key()).isZero();
+            }
+        }
+    }
+
+    // Passed as arguments, since default properties would lose to application.properties
+    private static ConfigurableApplicationContext startApplication(CurrencyStandIn upstream) {
+        return new SpringApplicationBuilder(SpringBootExampleApplication.class).run(
+                "--server.port=0",
+                "--server.tomcat.max-connections=10000",
+                "--api.base-url=" + upstream.baseUrl(),
+                "--currency.client.cache.ttl=" + CURRENCY_CACHE_TTL,
+                "--currency.client.cache.refresh-ahead=PT0S",
+                // The test configuration prints every statement and logs the application at DEBUG
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.net.huizha.examples=WARN",
+                "--logging.level.org.hibernate.SQL=WARN");
+    }
+
+    private static void seed(int port) throws IOException {
+        try (RawHttpConnection connection = new RawHttpConnection("localhost", port)) {
+            Map<String, String> headers = Map.of("Content-Type", "application/x-ndjson");
+            for (int from = 0; from < CUSTOMERS; from += SEED_BATCH) {
+                StringBuilder lines = new StringBuilder();
+                for (int i = from; i < Math.min(from + SEED_BATCH, CUSTOMERS); i++) {
+                    lines.append(customerJson("First" + i % 5_000, "Last" + i % 2_000)).append('\n');
+                }
+                RawHttpConnection.Response response = connection.send("POST", CUSTOMERS_PATH + "/batch", headers,
+                        RawHttp.ascii(lines.toString()));
+                assertThat(response.status()).as("seed status").isEqualTo(200);
+            }
+        }
+    }
+
+    private static Map<Operation, Stats> drive(int port, Map<Operation, Integer> weights, long[] seededIds,
+            Duration duration) {
+        Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+        // Creates stand in for deletes until the client has created a customer
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+        Operation[] wheel = weights.entrySet().stream()
+                .flatMap(e -> Collections.nCopies(e.getValue(), e.getKey()).stream())
+                .toArray(Operation[]::new);
+        long deadline = System.nanoTime() + duration.toNanos();
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CONCURRENCY; i++) {
+                users.execute(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    Deque<Long> created = new ArrayDeque<>();
+                    try (RawHttpConnection connection = new RawHttpConnection("localhost", port)) {
+                        while (System.nanoTime() < deadline) {
+                            Operation operation = wheel[random.nextInt(wheel.length)];
+                            if (operation == Operation.DELETE && created.isEmpty()) {
+                                operation = Operation.CREATE;
+                            }
+                            long seededId = random.nextLong(seededIds[0], seededIds[1] + 1);
+                            Stats s = stats.get(operation);
+                            long begin = System.nanoTime();
+                            try {
+                                RawHttpConnection.Response response =
+                                        send(connection, operation, seededId, created, random);
+                                s.micros().recordValue((System.nanoTime() - begin) / 1_000);
+                                if (response.status() >= 300) {
+                                    s.errors().increment();
+                                } else if (operation == Operation.CREATE) {
+                                    created.push(MAPPER.readTree(response.body()).get("id").asLong());
+                                }
+                            } catch (IOException e) {
+                                s.micros().recordValue((System.nanoTime() - begin) / 1_000);
+                                s.errors().increment();
+                                connection.close();
+                            }
+                        }
+                    } catch (IOException e) {
+                        LOGGER.warn("Closing a load-test connection failed", e);
+                    }
+                });
+            }
+        }
+        return stats;
+    }
+
+    private static RawHttpConnection.Response send(RawHttpConnection connection, Operation operation, long seededId,
+            Deque<Long> created, ThreadLocalRandom random) throws IOException {
+        return switch (operation) {
+            case GET -> connection.send("GET", CUSTOMERS_PATH + "/" + seededId, NO_HEADERS, null);
+            case LIST -> connection.send("GET", CUSTOMERS_PATH + "?afterId=" + seededId + "&limit=20", NO_HEADERS,
+                    null);
+            case CREATE -> connection.send("POST", CUSTOMERS_PATH, JSON_HEADERS,
+                    RawHttp.ascii(customerJson("Load" + random.nextInt(1_000), "Test" + random.nextInt(1_000))));
+            case UPDATE -> connection.send("PUT", CUSTOMERS_PATH + "/" + seededId, UPDATE_HEADERS,
+                    RawHttp.ascii(customerJson("First" + random.nextInt(5_000), "Last" + random.nextInt(2_000))));
+            case DELETE -> connection.send("DELETE", CUSTOMERS_PATH + "/" + created.pop(), NO_HEADERS, null);
+            case CURRENCIES -> connection.send("GET", "/api/v1/currency-client/currencies", NO_HEADERS, null);
+            case RATES -> connection.send("GET", "/api/v1/currency-server/rates?pair=USD%2FCNY&window=7", NO_HEADERS,
+                    null);
+        };
+    }
+
+    private static Map<String, Object> summary(Stats stats, double seconds) {
+        Histogram micros = stats.micros();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", micros.getTotalCount());
+        summary.put("errors", stats.errors().sum());
+        summary.put("throughputPerSecond", round(micros.getTotalCount() / seconds));
+        summary.put("p50Micros", micros.getValueAtPercentile(50));
+        summary.put("p99Micros", micros.getValueAtPercentile(99));
+        summary.put("p999Micros", micros.getValueAtPercentile(99.9));
+        summary.put("maxMicros", micros.getMaxValue());
+        return summary;
+    }
+
+    // e.g. "get=40,currencies=20"; operations left out are not run
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] keyAndWeight = entry.trim().split("=");
+            weights.put(Operation.valueOf(keyAndWeight[0].trim().toUpperCase()),
+                    Integer.parseInt(keyAndWeight[1].trim()));
+        }
+        weights.values().removeIf(weight -> weight <= 0);
+        assertThat(weights).as("loadtest.mix").isNotEmpty();
+        return weights;
+    }
+
+    private static String customerJson(String firstName, String lastName) {
+        return "{\"firstName\":\"" + firstName + "\",\"lastName\":\"" + lastName + "\"}";
+    }
+
+    // Bytes allocated by all threads of the JVM so far; virtual threads count towards their carriers
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getTotalThreadAllocatedBytes();
+    }
+
+    private static long[] gcCountAndMillis() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return new long[] { count, millis };
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
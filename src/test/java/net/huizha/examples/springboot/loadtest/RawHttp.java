@@ -0,0 +1,103 @@
+package net.huizha.examples.springboot.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Minimal HTTP/1.1 message reading shared by the load-test driver and stand-in. Blocking sockets on virtual threads
+ * scale to thousands of keep-alive connections with far less overhead than the JDK HTTP client and server.
+ */
+final class RawHttp {
+
+    /**
+     * Start line and headers of a message; header names are lower-cased.
+     */
+    record Head(String startLine, Map<String, String> headers) {
+
+        String header(String name) {
+            return headers.get(name.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private RawHttp() {
+    }
+
+    /**
+     * @return the message head, or {@code null} when the peer closed the connection before sending one
+     */
+    static Head readHead(InputStream in) throws IOException {
+        String startLine = readLine(in);
+        if (startLine == null) {
+            return null;
+        }
+        Map<String, String> headers = new HashMap<>();
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+        }
+        return new Head(startLine, headers);
+    }
+
+    /**
+     * Reads a body framed by Content-Length or chunked transfer coding.
+     */
+    static byte[] readBody(InputStream in, Head head) throws IOException {
+        if ("chunked".equalsIgnoreCase(head.header("transfer-encoding"))) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            int size;
+            while ((size = Integer.parseInt(requireLine(in).split(";")[0].trim(), 16)) > 0) {
+                body.write(in.readNBytes(size));
+                requireLine(in);
+            }
+            // Trailers end with an empty line
+            while (!requireLine(in).isEmpty()) {
+                // ignore trailer
+            }
+            return body.toByteArray();
+        }
+        String contentLength = head.header("content-length");
+        if (contentLength == null) {
+            return new byte[0];
+        }
+        int length = Integer.parseInt(contentLength);
+        byte[] body = in.readNBytes(length);
+        if (body.length < length) {
+            throw new EOFException("Connection closed in the middle of a body");
+        }
+        return body;
+    }
+
+    static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String requireLine(InputStream in) throws IOException {
+        String line = readLine(in);
+        if (line == null) {
+            throw new EOFException("Connection closed in the middle of a message");
+        }
+        return line;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.isEmpty() ? null : line.toString();
+    }
+}
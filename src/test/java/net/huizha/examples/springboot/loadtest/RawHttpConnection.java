@@ -0,0 +1,72 @@
+package net.huizha.examples.springboot.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Map;
+
+/**
+ * One keep-alive HTTP/1.1 client connection used by a single virtual user of the load-test driver.
+ */
+final class RawHttpConnection implements Closeable {
+
+    record Response(int status, RawHttp.Head head, byte[] body) {
+    }
+
+    private final String host;
+
+    private final int port;
+
+    private Socket socket;
+
+    private InputStream in;
+
+    private OutputStream out;
+
+    RawHttpConnection(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    Response send(String method, String path, Map<String, String> headers, byte[] body) throws IOException {
+        if (socket == null) {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedInputStream(socket.getInputStream());
+            out = new BufferedOutputStream(socket.getOutputStream());
+        }
+        StringBuilder request = new StringBuilder(method).append(' ').append(path).append(" HTTP/1.1\r\n")
+                .append("Host: ").append(host).append(':').append(port).append("\r\n");
+        headers.forEach((name, value) -> request.append(name).append(": ").append(value).append("\r\n"));
+        if (body != null) {
+            request.append("Content-Length: ").append(body.length).append("\r\n");
+        }
+        out.write(RawHttp.ascii(request.append("\r\n").toString()));
+        if (body != null) {
+            out.write(body);
+        }
+        out.flush();
+        RawHttp.Head head = RawHttp.readHead(in);
+        if (head == null) {
+            close();
+            throw new IOException("Connection closed by server");
+        }
+        byte[] responseBody = RawHttp.readBody(in, head);
+        if ("close".equalsIgnoreCase(head.header("connection"))) {
+            close();
+        }
+        return new Response(Integer.parseInt(head.startLine().split(" ")[1]), head, responseBody);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (socket != null) {
+            socket.close();
+            socket = null;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package net.huizha.examples.springboot.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import lombok.extern.slf4j.Slf4j;
+import net.huizha.examples.springboot.SpringBootExampleApplication;
+
+/**
+ * Compares platform-thread and virtual-thread request handling on a blocking path: every request to
+ * {@code /currency-client/currencies} makes an upstream call that takes {@code loadtest.upstream-latency} (default
+ * 100ms). Each case runs the application on a random port, drives it with {@code concurrency} clients for
+ * {@code loadtest.duration} and appends its result to {@code target/load-test/virtual-threads.jsonl}.
+ * <p>
+ * Run with {@code mvn test -Pload-test -Dtest=VirtualThreadLoadTests}.
+ */
+@Tag("load")
+@Slf4j
+class VirtualThreadLoadTests {
+
+    private static final String CURRENCIES_PATH = "/api/v1/currency-client/currencies";
+
+    private static final Path RESULT_FILE = Path.of("target", "load-test", "virtual-threads.jsonl");
+
+    private static final Duration DURATION = Duration.parse(System.getProperty("loadtest.duration", "PT20S"));
+
+    private static final Duration WARM_UP = Duration.parse(System.getProperty("loadtest.warm-up", "PT5S"));
+
+    private static CurrencyStandIn upstream;
+
+    @BeforeAll
+    static void startUpstream() throws IOException {
+        upstream = new CurrencyStandIn(Duration.parse(System.getProperty("loadtest.upstream-latency", "PT0.1S")));
+        Files.createDirectories(RESULT_FILE.getParent());
+    }
+
+    @AfterAll
+    static void stopUpstream() throws IOException {
+        upstream.close();
+    }
+
+    @ParameterizedTest(name = "virtual={0}, concurrency={1}")
+    @CsvSource({ "false, 1000", "true, 1000", "false, 5000", "true, 5000" })
+    void measureThroughput(boolean virtualThreads, int concurrency) throws Exception {
+        try (ConfigurableApplicationContext application = startApplication(virtualThreads)) {
+            int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+            drive(port, concurrency, WARM_UP);
+            Result result = drive(port, concurrency, DURATION);
+            String json = String.format(
+                    "{\"mode\":\"%s\",\"concurrency\":%d,\"durationSeconds\":%d,\"requests\":%d,\"errors\":%d,"
+                            + "\"throughputPerSecond\":%.1f}%n",
+                    virtualThreads ? "virtual" : "platform", concurrency, DURATION.toSeconds(), result.requests(),
+                    result.errors(), result.requests() / (double) DURATION.toSeconds());
+            LOGGER.warn("Load test result: {}", json.trim());
+            Files.writeString(RESULT_FILE, json, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+            assertThat(result.requests()).isPositive();
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(boolean virtualThreads) {
+        return new SpringApplicationBuilder(SpringBootExampleApplication.class).properties(
+                "server.port=0",
+                "spring.threads.virtual.enabled=" + virtualThreads,
+                "server.tomcat.max-connections=10000",
+                "server.tomcat.accept-count=10000",
+                "api.base-url=" + upstream.baseUrl(),
+                "currency.client.cache.ttl=PT0S",
+                "http.client.pool.max-total=10000",
+                "http.client.pool.max-per-route=10000",
+                "http.client.pool.lease-timeout=PT10S",
+                "http.client.read-timeout=PT30S",
+                "logging.level.net.huizha.examples=WARN",
+                "logging.level.org.hibernate.SQL=WARN")
+                .run();
+    }
+
+    private record Result(long requests, long errors) {
+    }
+
+    private static Result drive(int port, int concurrency, Duration duration) {
+        LongAdder requests = new LongAdder();
+        LongAdder errors = new LongAdder();
+        long deadline = System.nanoTime() + duration.toNanos();
+        // The upstream stand-in answers 304 to its ETag, so the cost measured is waiting, not payload handling
+        Map<String, String> headers = Map.of("If-None-Match", CurrencyStandIn.ETAG);
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                users.execute(() -> {
+                    try (RawHttpConnection connection = new RawHttpConnection("localhost", port)) {
+                        while (System.nanoTime() < deadline) {
+                            try {
+                                int status = connection.send("GET", CURRENCIES_PATH, headers, null).status();
+                                if (status == 200 || status == 304) {
+                                    requests.increment();
+                                } else {
+                                    errors.increment();
+                                }
+                            } catch (IOException e) {
+                                errors.increment();
+                                connection.close();
+                            }
+                        }
+                    } catch (IOException e) {
+                        errors.increment();
+                    }
+                });
+            }
+        }
+        return new Result(requests.sum(), errors.sum());
+    }
+}
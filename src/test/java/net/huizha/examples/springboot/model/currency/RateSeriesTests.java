@@ -0,0 +1,109 @@
+package net.huizha.examples.springboot.model.currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class RateSeriesTests {
+
+    private static final LocalDate START = LocalDate.parse("2025-03-01");
+
+    @Test
+    void query_should_returnDailyRatesInDateOrder_whenWindowIsOneDay() {
+        RateSeries series = RateSeries.of(response(List.of("USD/CNY", "EUR/CNY"),
+                record("2025-03-04", "7.1739", "7.5"),
+                record("2025-03-03", "7.1745", null),
+                record("2025-03-03", "9.9999", "9.9"),
+                record("not a date", "1.0", "1.0")));
+        assertThat(series.pairs()).containsExactly("USD/CNY", "EUR/CNY");
+        assertThat(series.firstDate()).contains(LocalDate.parse("2025-03-03"));
+        assertThat(series.lastDate()).contains(LocalDate.parse("2025-03-04"));
+        assertThat(series.query("USD/CNY", START, LocalDate.parse("2025-03-31"), 1)).containsExactly(
+                new RateWindow(LocalDate.parse("2025-03-03"), LocalDate.parse("2025-03-03"), 1, 7.1745, 7.1745, 7.1745),
+                new RateWindow(LocalDate.parse("2025-03-04"), LocalDate.parse("2025-03-04"), 1, 7.1739, 7.1739,
+                        7.1739));
+        // A missing rate leaves its day out
+        assertThat(series.query("EUR/CNY", START, LocalDate.parse("2025-03-31"), 1)).extracting(RateWindow::from)
+                .containsExactly(LocalDate.parse("2025-03-04"));
+    }
+
+    @Test
+    void query_should_aggregateWindowsAlignedToFrom_andClipLastWindowToTo() {
+        RateSeries series = RateSeries.of(response(List.of("USD/CNY"),
+                record("2025-03-03", "7.0"), record("2025-03-04", "8.0"), record("2025-03-05", "6.0"),
+                record("2025-03-20", "5.0")));
+        assertThat(series.query("USD/CNY", LocalDate.parse("2025-03-03"), LocalDate.parse("2025-03-21"), 7))
+                .containsExactly(
+                        new RateWindow(LocalDate.parse("2025-03-03"), LocalDate.parse("2025-03-09"), 3, 6.0, 8.0, 7.0),
+                        new RateWindow(LocalDate.parse("2025-03-17"), LocalDate.parse("2025-03-21"), 1, 5.0, 5.0,
+                                5.0));
+        assertThat(series.query("USD/CNY", LocalDate.parse("2025-03-06"), LocalDate.parse("2025-03-19"), 1))
+                .isEmpty();
+    }
+
+    @Test
+    void query_should_matchBruteForceAggregates_whenWindowsSpanManyRecords() {
+        Random random = new Random(42);
+        int days = 1_000;
+        List<ExchangeResponseRecord> records = new ArrayList<>();
+        String[] values = new String[days];
+        for (int day = 0; day < days; day++) {
+            values[day] = random.nextInt(10) == 0 ? null : String.valueOf(random.nextInt(100_000) / 100.0);
+            records.add(record(START.plusDays(day).toString(), values[day]));
+        }
+        RateSeries series = RateSeries.of(response(List.of("USD/CNY"), records.toArray(ExchangeResponseRecord[]::new)));
+        for (int window : new int[] { 1, 7, 30, 100, 365 }) {
+            LocalDate from = START.plusDays(random.nextInt(100));
+            LocalDate to = START.plusDays(days - random.nextInt(100));
+            for (RateWindow actual : series.query("USD/CNY", from, to, window)) {
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                double sum = 0;
+                int count = 0;
+                for (LocalDate date = actual.from(); !date.isAfter(actual.to()); date = date.plusDays(1)) {
+                    int day = (int) (date.toEpochDay() - START.toEpochDay());
+                    if (day < days && values[day] != null) {
+                        double value = Double.parseDouble(values[day]);
+                        min = Math.min(min, value);
+                        max = Math.max(max, value);
+                        sum += value;
+                        count++;
+                    }
+                }
+                assertThat(actual.count()).isEqualTo(count);
+                assertThat(actual.min()).isEqualTo(min);
+                assertThat(actual.max()).isEqualTo(max);
+                assertThat(actual.avg()).isCloseTo(sum / count, within(1e-9));
+            }
+        }
+    }
+
+    @Test
+    void query_should_fail_whenPairUnknownOrWindowInvalid() {
+        RateSeries series = RateSeries.of(response(List.of("USD/CNY"), record("2025-03-03", "7.0")));
+        assertThatThrownBy(() -> series.query("GBP/CNY", START, START, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> series.query("USD/CNY", START, START, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static ExchangeResponse response(List<String> pairs, ExchangeResponseRecord... records) {
+        ExchangeResponseData data = new ExchangeResponseData();
+        data.setHead(pairs);
+        ExchangeResponse response = new ExchangeResponse();
+        response.setData(data);
+        response.setRecords(List.of(records));
+        return response;
+    }
+
+    private static ExchangeResponseRecord record(String date, String... values) {
+        return new ExchangeResponseRecord(date, Rates.of(values));
+    }
+}
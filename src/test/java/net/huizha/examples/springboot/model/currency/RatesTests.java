@@ -0,0 +1,63 @@
+package net.huizha.examples.springboot.model.currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+
+class RatesTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void serialize_should_writeRecordsBackUnchanged_whenReadFromBundledCurrencyJson() throws IOException {
+        byte[] json;
+        try (InputStream inputStream = getClass().getResourceAsStream("/json/currency.json")) {
+            json = inputStream.readAllBytes();
+        }
+        ExchangeResponse response = objectMapper.readValue(json, ExchangeResponse.class);
+        JsonNode written = objectMapper.valueToTree(response);
+        assertThat(written.at("/records")).isEqualTo(objectMapper.readTree(json).at("/records"));
+    }
+
+    @Test
+    void accessors_should_keepExactDigits_whenValuesHaveTrailingZeros() {
+        Rates rates = Rates.of("7.9620", "202.97", "0.50651", "-1.5", "42");
+        assertThat(rates.size()).isEqualTo(5);
+        assertThat(rates.unscaledValue(0)).isEqualTo(79620);
+        assertThat(rates.scale(0)).isEqualTo(4);
+        assertThat(rates.decimalValue(0)).isEqualTo(new BigDecimal("7.9620"));
+        assertThat(rates.doubleValue(1)).isEqualTo(202.97);
+        assertThat(rates.doubleValue(2)).isEqualTo(0.50651);
+        assertThat(rates.doubleValue(3)).isEqualTo(-1.5);
+        assertThat(rates.doubleValue(4)).isEqualTo(42);
+        assertThat(rates).hasToString("[7.9620, 202.97, 0.50651, -1.5, 42]");
+    }
+
+    @Test
+    void deserialize_should_keepMissingRates_whenNullOrEmpty() throws IOException {
+        Rates rates = objectMapper.readValue("[\"1.25\",null,\"\"]", Rates.class);
+        assertThat(rates.isPresent(0)).isTrue();
+        assertThat(rates.isPresent(1)).isFalse();
+        assertThat(rates.isPresent(2)).isFalse();
+        assertThat(rates.doubleValue(1)).isNaN();
+        assertThat(rates.decimalValue(2)).isNull();
+        assertThat(rates).isEqualTo(Rates.of("1.25", null, ""));
+        assertThat(objectMapper.writeValueAsString(rates)).isEqualTo("[\"1.25\",null,\"\"]");
+    }
+
+    @Test
+    void deserialize_should_fail_whenValueIsNotADecimal() {
+        assertThatThrownBy(() -> objectMapper.readValue("[\"1.2e3\"]", Rates.class))
+                .isInstanceOf(InvalidFormatException.class);
+        assertThatThrownBy(() -> Rates.of("12345678901234567890")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -7,14 +7,21 @@ import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import java.util.List;
 import java.util.Optional;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import net.huizha.examples.springboot.model.customer.Customer;
+import net.huizha.examples.springboot.model.customer.CustomerDto;
 
 @SpringBootTest
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
@@ -24,6 +31,15 @@ class CustomerRepositoryTests {
     @Autowired
     private CustomerRepository customerRepository;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Test
     void findById_should_returnCustomer_whenIdExists() {
         Customer customer = new Customer("Ming", "Li");
@@ -173,4 +189,77 @@ class CustomerRepositoryTests {
         LOGGER.info(resultList.toString());
         assertThat(resultList).hasSize(2);
     }
+
+    @Test
+    void findById_should_hitSecondLevelCache_whenEntityWasLoadedBefore() {
+        customerRepository.save(new Customer("Ming", "Li"));
+        Statistics statistics = statistics();
+        customerRepository.findById(1L);
+        long hitsBefore = statistics.getSecondLevelCacheHitCount();
+        customerRepository.findById(1L);
+        assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(hitsBefore + 1);
+    }
+
+    @Test
+    void findByFirstName_should_hitQueryCache_whenCalledAgainWithoutWrites() {
+        customerRepository.save(new Customer("Ming", "Li"));
+        Statistics statistics = statistics();
+        customerRepository.findByFirstName("Ming");
+        long hitsBefore = statistics.getQueryCacheHitCount();
+        assertThat(customerRepository.findByFirstName("Ming")).hasSize(1);
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(hitsBefore + 1);
+    }
+
+    @Test
+    void findByFirstName_should_seeWrites_whenQueryResultWasCached() {
+        Customer customer = customerRepository.save(new Customer("Ming", "Li"));
+        assertThat(customerRepository.findByFirstName("Ming")).hasSize(1);
+        customerRepository.save(new Customer("Ming", "Wang"));
+        assertThat(customerRepository.findByFirstName("Ming")).hasSize(2);
+        customer.setFirstName("Lei");
+        customerRepository.save(customer);
+        assertThat(customerRepository.findByFirstName("Ming")).hasSize(1);
+        customerRepository.deleteById(2L);
+        assertThat(customerRepository.findByFirstName("Ming")).isEmpty();
+        assertThat(customerRepository.findById(1L)).get().extracting(Customer::getFirstName).isEqualTo("Lei");
+    }
+
+    @Test
+    void findDtosByIdGreaterThan_should_returnPageOfDtos_withoutLoadingEntities() {
+        customerRepository.save(new Customer("Ming", "Li"));
+        customerRepository.save(new Customer("Hong", "Wang"));
+        customerRepository.save(new Customer("Mei", "Li"));
+        Statistics statistics = statistics();
+        long entityLoadsBefore = statistics.getEntityLoadCount();
+        assertThat(customerRepository.findDtosByIdGreaterThan(1L, Limit.of(1)))
+                .containsExactly(new CustomerDto(2L, "Hong", "Wang", 0L));
+        assertThat(customerRepository.findAllDtos()).extracting(CustomerDto::getId).containsExactly(1L, 2L, 3L);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(entityLoadsBefore);
+    }
+
+    @Test
+    void meterRegistry_should_exposeCacheHitAndMissCounters() {
+        customerRepository.save(new Customer("Ming", "Li"));
+        customerRepository.findByFirstName("Ming");
+        customerRepository.findByFirstName("Ming");
+        assertThat(meterRegistry.get("hibernate.cache.query.requests").tag("result", "hit").functionCounter()
+                .count()).isPositive();
+        assertThat(meterRegistry.get("hibernate.second.level.cache.requests").tag("region", "customer")
+                .tag("result", "miss").functionCounter()).isNotNull();
+    }
+
+    @Test
+    void schema_should_indexNameColumns_whenMigrated() {
+        List<String> indexedColumns = jdbcTemplate.queryForList(
+                "SELECT index_name || ':' || column_name FROM information_schema.system_indexinfo "
+                        + "WHERE table_name = 'CUSTOMER' AND index_name LIKE 'IDX_%' "
+                        + "ORDER BY index_name, ordinal_position",
+                String.class);
+        assertThat(indexedColumns).containsExactly("IDX_CUSTOMER_FIRST_NAME:FIRST_NAME",
+                "IDX_CUSTOMER_LAST_NAME_FIRST_NAME:LAST_NAME", "IDX_CUSTOMER_LAST_NAME_FIRST_NAME:FIRST_NAME");
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
 }
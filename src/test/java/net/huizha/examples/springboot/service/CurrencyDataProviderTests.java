@@ -0,0 +1,124 @@
+package net.huizha.examples.springboot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.util.unit.DataSize;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.huizha.examples.springboot.util.JsonCodecs;
+import net.huizha.examples.springboot.util.ResponseCompression;
+import net.huizha.examples.springboot.util.WireFormat;
+
+class CurrencyDataProviderTests {
+
+    private static final String CURRENCY_JSON = """
+            {
+              "head": { "version": "2.0", "ts": %d },
+              "data": { "total": 1, "searchlist": ["USD/CNY"] },
+              "records": [ { "date": "2025-04-09", "values": ["7.2066"] } ]
+            }
+            """;
+
+    private static final int PAGE_CACHE_SIZE = 4;
+
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    void getSnapshot_should_returnParsedDataAndJson_whenClasspathFileExists() {
+        CurrencyDataProvider provider = newProvider("classpath:json/currency.json");
+        assertThat(provider.getSnapshot()).hasValueSatisfying(snapshot -> {
+            assertThat(snapshot.response().getData().getTotal()).isEqualTo(27);
+            assertThat(new String(snapshot.json(), StandardCharsets.UTF_8)).startsWith("{\"head\":{\"version\":\"2.0\"");
+            assertThat(snapshot.gzip()).isNotNull();
+            assertThat(snapshot.gzip().length).isLessThan(snapshot.json().length / 2);
+        });
+    }
+
+    @Test
+    void getSnapshot_should_returnEmpty_whenFileNotExist() {
+        CurrencyDataProvider provider = newProvider("file:" + tempDir.resolve("missing.json"));
+        assertThat(provider.getSnapshot()).isEmpty();
+    }
+
+    @Test
+    void reloadIfModified_should_swapSnapshot_whenFileChanges() throws IOException {
+        Path file = writeCurrencyFile(1L, 1_000L);
+        CurrencyDataProvider provider = newProvider("file:" + file);
+        CurrencyDataProvider.Snapshot first = provider.getSnapshot().orElseThrow();
+        assertThat(first.response().getHead().getTimestamp()).isEqualTo(1L);
+        // Below server.compression.min-response-size
+        assertThat(first.gzip()).isNull();
+
+        provider.reloadIfModified();
+        assertThat(provider.getSnapshot()).containsSame(first);
+
+        writeCurrencyFile(2L, 2_000L);
+        provider.reloadIfModified();
+        assertThat(provider.getSnapshot().orElseThrow().response().getHead().getTimestamp()).isEqualTo(2L);
+    }
+
+    @Test
+    void reloadIfModified_should_keepPreviousSnapshot_whenFileIsInvalid() throws IOException {
+        Path file = writeCurrencyFile(1L, 1_000L);
+        CurrencyDataProvider provider = newProvider("file:" + file);
+        CurrencyDataProvider.Snapshot first = provider.getSnapshot().orElseThrow();
+
+        Files.writeString(file, "{ not json");
+        file.toFile().setLastModified(2_000L);
+        provider.reloadIfModified();
+        assertThat(provider.getSnapshot()).containsSame(first);
+    }
+
+    @Test
+    void getPage_should_encodePageOnce_perFormatAndSize() throws Exception {
+        CurrencyDataProvider provider = newProvider("classpath:json/currency.json");
+        CurrencyDataProvider.Snapshot snapshot = provider.getSnapshot().orElseThrow();
+
+        CurrencyDataProvider.EncodedPage page = provider.getPage(snapshot, 1, 100, WireFormat.JSON);
+        assertThat(provider.getPage(snapshot, 1, 100, WireFormat.JSON)).isSameAs(page);
+        assertThat(page.gzip()).isNotNull();
+        assertThat(provider.getPage(snapshot, 1, 100, WireFormat.SMILE)).isNotSameAs(page)
+                .satisfies(smile -> assertThat(smile.gzip()).isNull());
+        // Below server.compression.min-response-size
+        assertThat(provider.getPage(snapshot, 1, 1, WireFormat.JSON).gzip()).isNull();
+        assertThat(snapshot.encodedPages()).hasSize(3);
+    }
+
+    @Test
+    void getPage_should_notCachePages_pastLastPageOrCacheSize() throws Exception {
+        CurrencyDataProvider provider = newProvider("classpath:json/currency.json");
+        CurrencyDataProvider.Snapshot snapshot = provider.getSnapshot().orElseThrow();
+
+        assertThat(provider.getPage(snapshot, 4, 10, WireFormat.JSON))
+                .isNotSameAs(provider.getPage(snapshot, 4, 10, WireFormat.JSON));
+        for (int pageNum = 1; pageNum <= PAGE_CACHE_SIZE + 1; pageNum++) {
+            provider.getPage(snapshot, pageNum, 1, WireFormat.JSON);
+        }
+        assertThat(snapshot.encodedPages()).hasSize(PAGE_CACHE_SIZE);
+    }
+
+    private CurrencyDataProvider newProvider(String location) {
+        CurrencyDataProvider provider = new CurrencyDataProvider(new JsonCodecs(new ObjectMapper()),
+                new ResponseCompression(true, DataSize.ofKilobytes(2)), new DefaultResourceLoader(), location,
+                PAGE_CACHE_SIZE);
+        provider.loadInitialSnapshot();
+        return provider;
+    }
+
+    private Path writeCurrencyFile(long timestamp, long lastModified) throws IOException {
+        Path file = tempDir.resolve("currency.json");
+        Files.writeString(file, CURRENCY_JSON.formatted(timestamp));
+        file.toFile().setLastModified(lastModified);
+        return file;
+    }
+}
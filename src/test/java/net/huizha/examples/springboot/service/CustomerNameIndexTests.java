@@ -0,0 +1,33 @@
+package net.huizha.examples.springboot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import net.huizha.examples.springboot.model.customer.CustomerDto;
+
+@SpringBootTest(properties = "customer.name-index.max-size=256B")
+class CustomerNameIndexTests {
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private CustomerNameIndex customerNameIndex;
+
+    @Test
+    void suggestNames_should_fallBackToDatabase_whenNameIndexExceedsMaxSize() {
+        assertThat(customerNameIndex.suggest("Li", 10)).isPresent();
+        customerService.createCustomer(CustomerDto.builder().firstName("Ming").lastName("Li").build());
+        assertThat(customerNameIndex.suggest("Mi", 10)).contains(List.of("Ming"));
+        customerService.createCustomer(CustomerDto.builder().firstName("Hong").lastName("Lin").build());
+        customerService.createCustomer(CustomerDto.builder().firstName("Lily").lastName("Wang").build());
+        assertThat(customerNameIndex.suggest("Li", 10)).isEmpty();
+        assertThat(customerService.suggestNames("Li", 10)).containsExactly("Li", "Lily", "Lin");
+        assertThat(customerService.suggestNames("Li", 2)).containsExactly("Li", "Lily");
+    }
+}
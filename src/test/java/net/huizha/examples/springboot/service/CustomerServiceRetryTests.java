@@ -0,0 +1,37 @@
+package net.huizha.examples.springboot.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import net.huizha.examples.springboot.model.customer.CustomerDto;
+
+/**
+ * Blind updates of one customer from several threads. With enough retries every update gets through; the other
+ * {@code CustomerService} tests run with the default retry settings.
+ */
+@SpringBootTest(properties = "customer.update.retry.max-attempts=100")
+class CustomerServiceRetryTests {
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Test
+    void updateCustomer_should_retryConflicts_whenNoVersionIsExpected() throws Exception {
+        long id = customerService.createCustomer(CustomerDto.builder().firstName("Hong").lastName("Wang").build())
+                .getId();
+        int threads = 8;
+        int updatesPerThread = 10;
+        CustomerServiceTests.runConcurrently(threads, () -> {
+            for (int i = 0; i < updatesPerThread; i++) {
+                customerService.updateCustomer(CustomerDto.builder().id(id).firstName("Hong")
+                        .lastName(Thread.currentThread().getName() + "-" + i).build());
+            }
+        });
+        // Every update was applied exactly once, each on top of the previous one
+        assertThat(customerService.getCustomerById(id)).get().extracting(CustomerDto::getVersion)
+                .isEqualTo((long) threads * updatesPerThread);
+    }
+}
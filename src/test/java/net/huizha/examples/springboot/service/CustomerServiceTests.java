@@ -2,29 +2,55 @@ package net.huizha.examples.springboot.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInfo;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.validation.ConstraintViolationException;
+import lombok.extern.slf4j.Slf4j;
+import net.huizha.examples.springboot.model.customer.CustomerBatchResult;
 import net.huizha.examples.springboot.model.customer.CustomerDto;
+import net.huizha.examples.springboot.model.customer.CustomerPatch;
 
 @SpringBootTest
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@Slf4j
 class CustomerServiceTests {
 
     @Autowired
     private CustomerService customerService;
 
+    @Autowired
+    private CustomerNameIndex customerNameIndex;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     private CustomerDto customerDto1;
 
     private CustomerDto customerDto2;
@@ -103,6 +129,31 @@ class CustomerServiceTests {
         assertThat(actual).isEqualTo(customerDto);
     }
 
+    @Test
+    void createCustomers_should_persistAllRows_whenBatchSpansSeveralFlushes() {
+        List<CustomerDto> customerDtos = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            customerDtos.add(CustomerDto.builder().firstName("First" + i).lastName("Last" + i).build());
+        }
+        CustomerBatchResult result = customerService.createCustomers(customerDtos.iterator());
+        assertThat(result.getCreated()).isEqualTo(120);
+        assertThat(result.getFailures()).isEmpty();
+        assertThat(customerService.getCustomers()).hasSize(120);
+    }
+
+    @Test
+    void createCustomers_should_reportInvalidRows_whenBatchContainsInvalidCustomers() {
+        List<CustomerDto> customerDtos = new ArrayList<>();
+        customerDtos.add(CustomerDto.builder().firstName("Ming").lastName("Li").build());
+        customerDtos.add(CustomerDto.builder().firstName(" ").build());
+        customerDtos.add(null);
+        CustomerBatchResult result = customerService.createCustomers(customerDtos.iterator());
+        assertThat(result.getCreated()).isEqualTo(1);
+        assertThat(result.getFailures()).containsExactly(
+                new CustomerBatchResult.Failure(1, "firstName: must not be blank; lastName: must not be blank"),
+                new CustomerBatchResult.Failure(2, "customerDto: must not be null"));
+    }
+
     @Test
     void getCustomers_should_returnAllCustomers_whenCalled() {
         List<CustomerDto> expected = new ArrayList<>();
@@ -111,6 +162,27 @@ class CustomerServiceTests {
         assertThat(customerService.getCustomers()).hasSize(2).isEqualTo(customerService.getCustomers());
     }
 
+    @Test
+    void getCustomers_should_returnPageAfterId_whenAfterIdAndLimitGiven() {
+        assertThat(customerService.getCustomers(0L, 1)).containsExactly(customerDto1);
+        assertThat(customerService.getCustomers(1L, 10)).containsExactly(customerDto2);
+        assertThat(customerService.getCustomers(2L, 10)).isEmpty();
+    }
+
+    @Test
+    void getCustomers_should_throwConstraintViolation_whenLimitIsNotPositive() {
+        assertThatExceptionOfType(ConstraintViolationException.class)
+            .isThrownBy(() -> customerService.getCustomers(0L, 0))
+            .withMessageMatching("getCustomers.limit: must be greater than or equal to 1");
+    }
+
+    @Test
+    void streamCustomers_should_visitAllCustomersInIdOrder() {
+        List<CustomerDto> visited = new ArrayList<>();
+        customerService.streamCustomers(visited::add);
+        assertThat(visited).containsExactly(customerDto1, customerDto2);
+    }
+
     @Test
     void getCustomerById_should_returnEmpty_whenIdNotExist() {
         assertThat(customerService.getCustomerById(3L)).isEmpty();
@@ -131,6 +203,56 @@ class CustomerServiceTests {
         assertThat(updatedCustomerDto.get().getLastName()).isEqualTo("Wang");
     }
 
+    @Test
+    void updateCustomer_should_onlyIssueUpdate_whenCustomerIsCached() {
+        customerService.getCustomerById(2L);
+        Statistics statistics = statistics();
+        long statementsBefore = statistics.getPrepareStatementCount();
+        customerDto2.setFirstName("John");
+        assertThat(customerService.updateCustomer(customerDto2)).isPresent();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statementsBefore + 1);
+        assertThat(customerService.getCustomerById(2L)).get().extracting(CustomerDto::getFirstName)
+                .isEqualTo("John");
+    }
+
+    @Test
+    void updateCustomer_should_throwOptimisticLockingFailure_whenExpectedVersionIsStale() {
+        customerDto2.setFirstName("John");
+        assertThat(customerService.updateCustomer(customerDto2, 0L)).get().extracting(CustomerDto::getVersion)
+                .isEqualTo(1L);
+        assertThatExceptionOfType(OptimisticLockingFailureException.class)
+            .isThrownBy(() -> customerService.updateCustomer(customerDto2, 0L));
+        assertThat(customerService.getCustomerById(2L)).get().extracting(CustomerDto::getVersion).isEqualTo(1L);
+    }
+
+    @Test
+    void updateCustomer_should_loseNoIncrements_whenManyThreadsReadModifyWriteTheSameCustomer() throws Exception {
+        int threads = 8;
+        int incrementsPerThread = 25;
+        AtomicInteger conflicts = new AtomicInteger();
+        runConcurrently(threads, () -> {
+            for (int i = 0; i < incrementsPerThread; i++) {
+                // Optimistic: no lock is held between the read and the write, a stale write fails and is redone
+                while (true) {
+                    CustomerDto current = customerService.getCustomerById(1L).orElseThrow();
+                    CustomerDto incremented = CustomerDto.builder().id(1L).firstName(current.getFirstName())
+                            .lastName(String.valueOf(counterOf(current) + 1)).build();
+                    try {
+                        customerService.updateCustomer(incremented, current.getVersion());
+                        break;
+                    } catch (OptimisticLockingFailureException e) {
+                        conflicts.incrementAndGet();
+                    }
+                }
+            }
+        });
+        CustomerDto customer = customerService.getCustomerById(1L).orElseThrow();
+        assertThat(counterOf(customer)).isEqualTo(threads * incrementsPerThread);
+        assertThat(customer.getVersion()).isEqualTo(threads * incrementsPerThread);
+        LOGGER.info("{} increments from {} threads with {} conflicts", threads * incrementsPerThread, threads,
+                conflicts.get());
+    }
+
     @Test
     void updateCustomer_should_throwConstraintViolation_whenCustomerIsNull() {
         assertThatExceptionOfType(ConstraintViolationException.class).isThrownBy(() -> {
@@ -151,6 +273,26 @@ class CustomerServiceTests {
         assertThat(customerService.getCustomerById(2L)).isEmpty();
     }
 
+    @Test
+    void deleteCustomerById_should_onlyIssueDelete_whenCustomerIsCached() {
+        customerService.getCustomerById(2L);
+        Statistics statistics = statistics();
+        long statementsBefore = statistics.getPrepareStatementCount();
+        assertThat(customerService.deleteCustomerById(2L)).isTrue();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statementsBefore + 1);
+        assertThat(customerService.deleteCustomerById(2L)).isFalse();
+    }
+
+    @Test
+    void deleteCustomerById_should_retry_whenCustomerChangedAfterItWasRead() {
+        // The cached customer is at version 0 while the row moves on, as if updated between the read and the DELETE
+        customerService.getCustomerById(2L);
+        jdbcTemplate.update("UPDATE customer SET last_name = 'Li', version = version + 1 WHERE id = 2");
+
+        assertThat(customerService.deleteCustomerById(2L)).isTrue();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customer WHERE id = 2", Integer.class)).isZero();
+    }
+
     @Test
     void deleteCustomerById_should_notThrowEmptyResultDataAccessException_whenIdNotExist() {
         assertThat(customerService.getCustomerById(3L)).isEmpty();
@@ -160,4 +302,94 @@ class CustomerServiceTests {
         });
         assertThat(customerService.getCustomers()).isInstanceOf(List.class).hasSize(2);
     }
+
+    @Test
+    void suggestNames_should_followCreateUpdateAndDelete_whenServedFromNameIndex() {
+        assertThat(customerNameIndex.suggest("Li", 10)).isPresent();
+        assertThat(customerService.suggestNames("Li", 10)).containsExactly("Li");
+        customerService.updateCustomer(CustomerDto.builder().id(1L).firstName("Lin").lastName("Li").build());
+        assertThat(customerService.suggestNames("Li", 10)).containsExactly("Li", "Lin");
+        assertThat(customerService.suggestNames("Mi", 10)).isEmpty();
+        customerService.deleteCustomerById(1L);
+        assertThat(customerService.suggestNames("Li", 10)).isEmpty();
+        customerService.createCustomers(List.of(CustomerDto.builder().firstName("Liam").lastName("Wang").build(),
+                CustomerDto.builder().firstName("Lisa").lastName("Hu").build()).iterator());
+        assertThat(customerService.suggestNames("Li", 1)).containsExactly("Liam");
+        assertThat(customerService.suggestNames("W", 10)).containsExactly("Wang");
+        customerService.deleteCustomerById(2L);
+        assertThat(customerService.suggestNames("W", 10)).containsExactly("Wang");
+    }
+
+    @Test
+    void updateCustomers_should_setGivenNamesOnly_andCountUpdatedCustomers() {
+        CustomerPatch patch = CustomerPatch.builder().lastName("Zhang").build();
+        assertThat(customerService.updateCustomers(Set.of(1L, 2L, 3L), patch)).isEqualTo(2);
+        assertThat(customerService.getCustomers()).extracting(CustomerDto::getFirstName, CustomerDto::getLastName)
+                .containsExactlyInAnyOrder(tuple("Ming", "Zhang"), tuple("Hong", "Zhang"));
+        assertThat(customerService.updateCustomers(Set.of(3L), patch)).isZero();
+    }
+
+    @Test
+    void updateCustomers_should_throwConstraintViolation_whenNameIsBlank() {
+        CustomerPatch patch = CustomerPatch.builder().firstName(" ").build();
+        assertThatExceptionOfType(ConstraintViolationException.class)
+            .isThrownBy(() -> customerService.updateCustomers(Set.of(1L), patch))
+            .withMessageMatching("updateCustomers.patch.firstName: must not be blank");
+    }
+
+    @Test
+    void deleteCustomersByIds_should_deleteWithOneStatement_andCountDeletedCustomers() {
+        Statistics statistics = statistics();
+        long statementsBefore = statistics.getPrepareStatementCount();
+        assertThat(customerService.deleteCustomersByIds(Set.of(1L, 2L, 3L))).isEqualTo(2);
+        // The DELETE plus the read of the names the name index drops
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statementsBefore + 2);
+        assertThat(customerService.getCustomers()).isEmpty();
+        assertThat(customerService.deleteCustomersByIds(Set.of(1L))).isZero();
+    }
+
+    @Test
+    void suggestNames_should_followBulkUpdateAndDelete_whenServedFromNameIndex() {
+        assertThat(customerNameIndex.suggest("Li", 10)).isPresent();
+        customerService.updateCustomers(Set.of(1L, 2L), CustomerPatch.builder().firstName("Lin").build());
+        assertThat(customerService.suggestNames("Li", 10)).containsExactly("Li", "Lin");
+        assertThat(customerService.suggestNames("Ho", 10)).isEmpty();
+        customerService.deleteCustomersByIds(Set.of(1L));
+        assertThat(customerService.suggestNames("Li", 10)).containsExactly("Lin");
+        customerService.deleteCustomersByIds(Set.of(2L));
+        assertThat(customerService.suggestNames("Li", 10)).isEmpty();
+        assertThat(customerService.suggestNames("W", 10)).isEmpty();
+    }
+
+    // Counter kept in the last name by the increment test; the initial "Li" counts as 0
+    private static int counterOf(CustomerDto customerDto) {
+        return customerDto.getLastName().chars().allMatch(Character::isDigit)
+                ? Integer.parseInt(customerDto.getLastName()) : 0;
+    }
+
+    // Starts all threads at once and fails with the first exception any of them threw
+    static void runConcurrently(int threads, Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
 }
@@ -0,0 +1,41 @@
+package net.huizha.examples.springboot.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class PrefixIndexTests {
+
+    @Test
+    void suggest_should_returnTermsWithPrefixInOrder_upToLimit() {
+        PrefixIndex index = new PrefixIndex(1024);
+        index.apply(Map.of("Lin", 1, "Li", 2, "Ming", 1, "Lily", 1, "L", 1));
+        assertThat(index.suggest("Li", 10)).containsExactly("Li", "Lily", "Lin");
+        assertThat(index.suggest("Li", 2)).containsExactly("Li", "Lily");
+        assertThat(index.suggest("Lj", 10)).isEmpty();
+        assertThat(index.suggest("Z", 10)).isEmpty();
+    }
+
+    @Test
+    void apply_should_removeTerm_whenCountDropsToZero() {
+        PrefixIndex index = new PrefixIndex(1024);
+        index.apply(Map.of("Li", 2, "Lin", 1));
+        index.apply(Map.of("Li", -1, "Lin", -1));
+        assertThat(index.suggest("Li", 10)).containsExactly("Li");
+        index.apply(Map.of("Li", -1, "Ling", 0));
+        assertThat(index.size()).isZero();
+        assertThat(index.estimatedBytes()).isZero();
+    }
+
+    @Test
+    void apply_should_leaveIndexUnchanged_whenMaxBytesWouldBeExceeded() {
+        PrefixIndex index = new PrefixIndex(100);
+        assertThat(index.apply(Map.of("Li", 1))).isTrue();
+        long estimatedBytes = index.estimatedBytes();
+        assertThat(index.apply(Map.of("Lin", 1, "Lily", 1))).isFalse();
+        assertThat(index.suggest("Li", 10)).containsExactly("Li");
+        assertThat(index.estimatedBytes()).isEqualTo(estimatedBytes);
+    }
+}
@@ -0,0 +1,205 @@
+package net.huizha.examples.springboot.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import org.junit.jupiter.api.Test;
+
+class RefreshAheadCacheTests {
+
+    private static final Duration TTL = Duration.ofSeconds(60);
+
+    private static final Duration REFRESH_AHEAD = Duration.ofSeconds(10);
+
+    private final AtomicLong nanoClock = new AtomicLong();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final List<Runnable> backgroundTasks = new ArrayList<>();
+
+    private RefreshAheadCache<String> newCache(UnaryOperator<String> loader) {
+        return new RefreshAheadCache<>(loader, TTL, REFRESH_AHEAD, backgroundTasks::add,
+                e -> !(e instanceof IllegalArgumentException), nanoClock::get);
+    }
+
+    private String countingLoader(String previous) {
+        return "v" + loads.incrementAndGet();
+    }
+
+    @Test
+    void get_should_loadOnceAndHit_whenWithinTtl() {
+        RefreshAheadCache<String> cache = newCache(this::countingLoader);
+        assertThat(cache.get()).isEqualTo("v1");
+        advance(Duration.ofSeconds(30));
+        assertThat(cache.get()).isEqualTo("v1");
+        assertThat(loads).hasValue(1);
+        assertThat(cache.missCount()).isEqualTo(1);
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(backgroundTasks).isEmpty();
+    }
+
+    @Test
+    void get_should_refreshInBackground_whenCloseToExpiry() {
+        RefreshAheadCache<String> cache = newCache(this::countingLoader);
+        cache.get();
+        advance(Duration.ofSeconds(55));
+        assertThat(cache.get()).isEqualTo("v1");
+        assertThat(cache.get()).isEqualTo("v1");
+        // The second read finds the refresh already in flight
+        assertThat(backgroundTasks).hasSize(1);
+        backgroundTasks.get(0).run();
+        assertThat(cache.get()).isEqualTo("v2");
+        assertThat(cache.hitCount()).isEqualTo(3);
+    }
+
+    @Test
+    void get_should_reloadSynchronously_whenExpired() {
+        RefreshAheadCache<String> cache = newCache(this::countingLoader);
+        cache.get();
+        advance(TTL);
+        assertThat(cache.get()).isEqualTo("v2");
+        assertThat(cache.missCount()).isEqualTo(2);
+    }
+
+    @Test
+    void get_should_passPreviousValueToLoader() {
+        List<String> previousValues = new ArrayList<>();
+        RefreshAheadCache<String> cache = newCache(previous -> {
+            previousValues.add(previous);
+            return countingLoader(previous);
+        });
+        cache.get();
+        advance(TTL);
+        cache.get();
+        assertThat(previousValues).containsExactly(null, "v1");
+    }
+
+    @Test
+    void get_should_serveStaleValue_whenReloadFails() {
+        RefreshAheadCache<String> cache = newCache(previous -> {
+            if (previous != null) {
+                throw new IllegalStateException("upstream down");
+            }
+            return "v1";
+        });
+        cache.get();
+        advance(TTL);
+        assertThat(cache.get()).isEqualTo("v1");
+        assertThat(cache.staleHitCount()).isEqualTo(1);
+        assertThat(cache.loadFailureCount()).isEqualTo(1);
+    }
+
+    @Test
+    void get_should_throw_whenReloadFailsWithExcludedException() {
+        RefreshAheadCache<String> cache = newCache(previous -> {
+            if (previous != null) {
+                throw new IllegalArgumentException("not found");
+            }
+            return "v1";
+        });
+        cache.get();
+        advance(TTL);
+        assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(cache::get);
+    }
+
+    @Test
+    void get_should_throw_whenLoadFailsAndNothingCached() {
+        RefreshAheadCache<String> cache = newCache(previous -> {
+            throw new IllegalStateException("upstream down");
+        });
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(cache::get).withMessage("upstream down");
+    }
+
+    @Test
+    void get_should_expireExactlyAtTtl() {
+        RefreshAheadCache<String> cache = new RefreshAheadCache<>(this::countingLoader, TTL, Duration.ZERO,
+                backgroundTasks::add, e -> true, nanoClock::get);
+        cache.get();
+        advance(TTL.minusNanos(1));
+        assertThat(cache.get()).isEqualTo("v1");
+        advance(Duration.ofNanos(1));
+        assertThat(cache.get()).isEqualTo("v2");
+        assertThat(cache.hitCount()).isEqualTo(1);
+        assertThat(cache.missCount()).isEqualTo(2);
+        assertThat(backgroundTasks).isEmpty();
+    }
+
+    @Test
+    void get_should_shareOneLoad_whenCalledConcurrently() throws Exception {
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        RefreshAheadCache<String> cache = newCache(previous -> {
+            loaderStarted.countDown();
+            await(releaseLoader);
+            return countingLoader(previous);
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(cache::get));
+            assertThat(loaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(cache::get));
+            }
+            // Give the other readers time to join the in-flight load
+            Thread.sleep(100);
+            releaseLoader.countDown();
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("v1");
+            }
+            assertThat(loads).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void get_should_releaseJoinedReaders_whenBackgroundRefreshRejected() throws Exception {
+        AtomicReference<RefreshAheadCache<String>> cache = new AtomicReference<>();
+        FutureTask<String> joinedRead = new FutureTask<>(() -> cache.get().get());
+        cache.set(new RefreshAheadCache<>(this::countingLoader, TTL, REFRESH_AHEAD, task -> {
+            // A read after the TTL joins the refresh before the executor rejects it
+            advance(TTL);
+            Thread reader = new Thread(joinedRead);
+            reader.start();
+            while (reader.getState() != Thread.State.WAITING) {
+                Thread.onSpinWait();
+            }
+            throw new RejectedExecutionException("executor saturated");
+        }, e -> !(e instanceof IllegalArgumentException), nanoClock::get));
+        cache.get().get();
+        advance(Duration.ofSeconds(55));
+
+        assertThat(cache.get().get()).isEqualTo("v1");
+        // The rejection is served stale like a failed load
+        assertThat(joinedRead.get(5, TimeUnit.SECONDS)).isEqualTo("v1");
+        assertThat(cache.get().get()).isEqualTo("v2");
+    }
+
+    private void advance(Duration duration) {
+        nanoClock.addAndGet(duration.toNanos());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package net.huizha.examples.springboot.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.unit.DataSize;
+
+class ResponseCompressionTests {
+
+    private static final byte[] LARGE = "{\"pair\":\"USD/CNY\",\"value\":\"7.2066\"},".repeat(100)
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] SMALL = "{}".getBytes(StandardCharsets.UTF_8);
+
+    private final ResponseCompression compression = new ResponseCompression(true, DataSize.ofKilobytes(2));
+
+    @Test
+    void precompress_should_gzip_whenAtLeastMinResponseSize() throws IOException {
+        byte[] gzip = compression.precompress(LARGE);
+        assertThat(gzip.length).isLessThan(LARGE.length / 10);
+        assertThat(gunzip(gzip)).isEqualTo(LARGE);
+    }
+
+    @Test
+    void precompress_should_returnNull_whenSmallOrDisabled() {
+        assertThat(compression.precompress(SMALL)).isNull();
+        assertThat(new ResponseCompression(false, DataSize.ofBytes(0)).precompress(LARGE)).isNull();
+    }
+
+    @Test
+    void body_should_sendGzipWithSuffixedETag_whenAccepted() {
+        byte[] gzip = compression.precompress(LARGE);
+        ResponseEntity<byte[]> response = compression.body(ResponseEntity.ok(), "\"v1\"", LARGE, gzip, "gzip, br");
+        assertThat(response.getBody()).isSameAs(gzip);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"v1-gzip\"");
+        assertThat(response.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    @Test
+    void identityETag_should_stripGzipSuffix() {
+        assertThat(ResponseCompression.identityETag(ResponseCompression.gzipETag("\"v1\""))).isEqualTo("\"v1\"");
+        assertThat(ResponseCompression.identityETag("\"v1\"")).isEqualTo("\"v1\"");
+        assertThat(ResponseCompression.identityETag("\"v1-smile\"")).isEqualTo("\"v1-smile\"");
+    }
+
+    @Test
+    void body_should_sendIdentity_whenGzipNotAcceptedOrMissing() {
+        byte[] gzip = compression.precompress(LARGE);
+        ResponseEntity<byte[]> response = compression.body(ResponseEntity.ok(), "\"v1\"", LARGE, gzip, null);
+        assertThat(response.getBody()).isSameAs(LARGE);
+        assertThat(response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"v1\"");
+        assertThat(response.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT_ENCODING);
+
+        response = compression.body(ResponseEntity.ok(), "\"v1\"", SMALL, null, "gzip");
+        assertThat(response.getBody()).isSameAs(SMALL);
+        assertThat(response.getHeaders().getVary()).isEmpty();
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "gzip|true",
+            "deflate, GZIP;q=0.5|true",
+            "x-gzip|true",
+            "*|true",
+            "br;q=1, *;q=0.1|true",
+            "gzip;q=0|false",
+            "gzip;q=0, *|false",
+            "*;q=0|false",
+            "deflate, br|false",
+            "identity|false" })
+    void acceptsGzip_should_honourCodingsAndQualities(String acceptEncoding, boolean expected) {
+        assertThat(ResponseCompression.acceptsGzip(acceptEncoding)).isEqualTo(expected);
+    }
+
+    @Test
+    void gzipETag_should_keepQuotesAndWeakness() {
+        assertThat(ResponseCompression.gzipETag("\"abc\"")).isEqualTo("\"abc-gzip\"");
+        assertThat(ResponseCompression.gzipETag("W/\"abc\"")).isEqualTo("W/\"abc-gzip\"");
+    }
+
+    private static byte[] gunzip(byte[] gzip) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            return in.readAllBytes();
+        }
+    }
+}
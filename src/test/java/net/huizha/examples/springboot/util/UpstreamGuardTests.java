@@ -0,0 +1,273 @@
+package net.huizha.examples.springboot.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+class UpstreamGuardTests {
+
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(10);
+
+    private static final Duration HEDGE_DELAY = Duration.ofMillis(10);
+
+    private final AtomicLong nanoClock = new AtomicLong();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private UpstreamGuard guard;
+
+    private UpstreamGuard newGuard(UpstreamGuard.Settings.SettingsBuilder settings) {
+        guard = new UpstreamGuard("test", settings.openDuration(OPEN_DURATION).build(),
+                e -> !(e instanceof IllegalArgumentException), nanoClock::get);
+        return guard;
+    }
+
+    @AfterEach
+    void closeGuard() {
+        release.countDown();
+        guard.close();
+    }
+
+    private String succeed() {
+        calls.incrementAndGet();
+        return "ok";
+    }
+
+    private String fail() {
+        calls.incrementAndGet();
+        throw new IllegalStateException("upstream failed");
+    }
+
+    private String block() {
+        calls.incrementAndGet();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "slow";
+    }
+
+    private UpstreamGuard.Settings.SettingsBuilder circuitSettings() {
+        return UpstreamGuard.Settings.builder().failureWindow(4).minimumCalls(4).failureRate(0.5);
+    }
+
+    private void openCircuit() {
+        guard.call(this::succeed);
+        guard.call(this::succeed);
+        for (int i = 0; i < 2; i++) {
+            assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> guard.call(this::fail));
+        }
+    }
+
+    @Test
+    void call_should_failFastWithoutCalling_whenFailureRateReached() {
+        newGuard(circuitSettings());
+        openCircuit();
+        assertThat(guard.getState()).isEqualTo(UpstreamGuard.State.OPEN);
+
+        assertThatExceptionOfType(UpstreamGuard.RejectedException.class).isThrownBy(() -> guard.call(this::succeed))
+                .extracting(UpstreamGuard.RejectedException::getReason)
+                .isEqualTo(UpstreamGuard.Rejection.CIRCUIT_OPEN);
+        assertThat(calls).hasValue(4);
+        assertThat(guard.rejectionCount(UpstreamGuard.Rejection.CIRCUIT_OPEN)).isEqualTo(1);
+    }
+
+    @Test
+    void call_should_openCircuit_onlyWhenFailureRateReachedOverWindow() {
+        newGuard(circuitSettings());
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> guard.call(this::fail));
+        assertThat(guard.getState()).isEqualTo(UpstreamGuard.State.CLOSED);
+        for (int i = 0; i < 3; i++) {
+            guard.call(this::succeed);
+        }
+        assertThat(guard.getState()).isEqualTo(UpstreamGuard.State.CLOSED);
+        // The first failure slides out of the window
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> guard.call(this::fail));
+        assertThat(guard.getState()).isEqualTo(UpstreamGuard.State.CLOSED);
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> guard.call(this::fail));
+        assertThat(guard.getState()).isEqualTo(UpstreamGuard.State.OPEN);
+    }
+
+    @Test
+    void call_should_notCountClientErrors() {
+        newGuard(circuitSettings());
+        for (int i = 0; i < 4; i++) {
+            assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> guard.call(() -> {
+                throw new IllegalArgumentException("not found");
+            }));
+        }
+        assertThat(guard.getState()).isEqualTo(UpstreamGuard.State.CLOSED);
+    }
+
+    @Test
+    void call_should_closeCircuit_whenProbeSucceedsAfterOpenDuration() {
+        newGuard(circuitSettings());
+        openCircuit();
+        nanoClock.addAndGet(OPEN_DURATION.toNanos());
+        assertThat(guard.getState()).isEqualTo(UpstreamGuard.State.HALF_OPEN);
+
+        assertThat(guard.call(this::succeed)).isEqualTo("ok");
+        assertThat(guard.getState()).isEqualTo(UpstreamGuard.State.CLOSED);
+    }
+
+    @Test
+    void call_should_reopenCircuit_whenProbeFails() {
+        newGuard(circuitSettings());
+        openCircuit();
+        nanoClock.addAndGet(OPEN_DURATION.toNanos());
+
+        assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> guard.call(this::fail));
+        assertThat(guard.getState()).isEqualTo(UpstreamGuard.State.OPEN);
+        nanoClock.addAndGet(OPEN_DURATION.toNanos() - 1);
+        assertThatExceptionOfType(UpstreamGuard.RejectedException.class).isThrownBy(() -> guard.call(this::succeed));
+    }
+
+    @Test
+    void call_should_admitSingleProbe_whenHalfOpen() throws Exception {
+        newGuard(circuitSettings());
+        openCircuit();
+        nanoClock.addAndGet(OPEN_DURATION.toNanos());
+
+        CompletableFuture<String> probe = CompletableFuture.supplyAsync(() -> guard.call(this::block));
+        while (calls.get() < 5) {
+            Thread.onSpinWait();
+        }
+        assertThatExceptionOfType(UpstreamGuard.RejectedException.class).isThrownBy(() -> guard.call(this::succeed));
+        release.countDown();
+        assertThat(probe.get(5, TimeUnit.SECONDS)).isEqualTo("slow");
+        assertThat(guard.getState()).isEqualTo(UpstreamGuard.State.CLOSED);
+    }
+
+    @Test
+    void call_should_reject_whenBulkheadFull() throws Exception {
+        newGuard(UpstreamGuard.Settings.builder().maxConcurrent(1).maxWait(Duration.ZERO));
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> guard.call(this::block));
+        while (guard.availableSlots() > 0) {
+            Thread.onSpinWait();
+        }
+
+        assertThatExceptionOfType(UpstreamGuard.RejectedException.class).isThrownBy(() -> guard.call(this::succeed))
+                .extracting(UpstreamGuard.RejectedException::getReason)
+                .isEqualTo(UpstreamGuard.Rejection.BULKHEAD_FULL);
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("slow");
+        assertThat(guard.call(this::succeed)).isEqualTo("ok");
+        assertThat(guard.rejectionCount(UpstreamGuard.Rejection.BULKHEAD_FULL)).isEqualTo(1);
+    }
+
+    @Test
+    void call_should_waitForCall_untilMinSamplesSeen() {
+        newGuard(UpstreamGuard.Settings.builder().minSamples(5).minTimeout(Duration.ofMillis(10)));
+        assertThat(guard.getTimeout()).isNull();
+
+        assertThat(guard.call(() -> {
+            sleep(100);
+            return "ok";
+        })).isEqualTo("ok");
+        assertThat(guard.timeoutCount()).isZero();
+    }
+
+    @Test
+    void call_should_timeOut_whenSlowerThanAdaptiveTimeout() {
+        newGuard(UpstreamGuard.Settings.builder().minSamples(5).minTimeout(Duration.ofMillis(50)));
+        for (int i = 0; i < 5; i++) {
+            guard.call(this::succeed);
+        }
+        assertThat(guard.getTimeout()).isEqualTo(Duration.ofMillis(50));
+
+        long started = System.nanoTime();
+        assertThatExceptionOfType(ResourceAccessException.class).isThrownBy(() -> guard.call(this::block));
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(2));
+        assertThat(guard.timeoutCount()).isEqualTo(1);
+    }
+
+    private void observeLatency(Duration latency) {
+        guard.call(() -> {
+            nanoClock.addAndGet(latency.toNanos());
+            return succeed();
+        });
+    }
+
+    @Test
+    void call_should_returnHedgedResult_whenFirstAttemptIsSlow() {
+        newGuard(UpstreamGuard.Settings.builder().minSamples(5).minTimeout(Duration.ofSeconds(2)).hedging(true));
+        for (int i = 0; i < 5; i++) {
+            observeLatency(HEDGE_DELAY);
+        }
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = guard.call(() -> {
+            if (attempts.incrementAndGet() > 1) {
+                return "hedged";
+            }
+            nanoClock.addAndGet(HEDGE_DELAY.toNanos());
+            return block();
+        });
+
+        assertThat(result).isEqualTo("hedged");
+        assertThat(attempts).hasValue(2);
+        assertThat(guard.hedgeCount()).isEqualTo(1);
+    }
+
+    @Test
+    void call_should_notHedge_beforeHedgeDelayPassedOnClock() {
+        newGuard(UpstreamGuard.Settings.builder().minSamples(5).minTimeout(Duration.ofSeconds(2)).hedging(true));
+        for (int i = 0; i < 5; i++) {
+            observeLatency(HEDGE_DELAY);
+        }
+
+        // Slower than the hedge delay in real time, but the guard's clock stands still
+        assertThat(guard.call(() -> {
+            nanoClock.addAndGet(HEDGE_DELAY.toNanos() - 1);
+            sleep(50);
+            return succeed();
+        })).isEqualTo("ok");
+        assertThat(calls).hasValue(6);
+        assertThat(guard.hedgeCount()).isZero();
+    }
+
+    @Test
+    void call_should_notHedge_whenDisabled() {
+        newGuard(UpstreamGuard.Settings.builder().minSamples(5));
+        for (int i = 0; i < 5; i++) {
+            guard.call(this::succeed);
+        }
+
+        assertThat(guard.call(() -> {
+            sleep(50);
+            return "ok";
+        })).isEqualTo("ok");
+        assertThat(guard.hedgeCount()).isZero();
+    }
+
+    @Test
+    void call_should_runOnVirtualThread_whenVirtualThreadsEnabled() {
+        newGuard(UpstreamGuard.Settings.builder().virtualThreads(true));
+        assertThat(guard.call(() -> Thread.currentThread().isVirtual())).isTrue();
+
+        guard.close();
+        newGuard(UpstreamGuard.Settings.builder());
+        assertThat(guard.call(() -> Thread.currentThread().isVirtual())).isFalse();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
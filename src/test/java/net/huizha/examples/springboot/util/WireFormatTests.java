@@ -0,0 +1,51 @@
+package net.huizha.examples.springboot.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.http.MediaType;
+
+class WireFormatTests {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', nullValues = "null", value = {
+            "application/x-jackson-smile|SMILE",
+            "application/x-jackson-smile, application/json;q=0.9|SMILE",
+            "application/json, application/x-jackson-smile|SMILE",
+            "application/x-jackson-smile;q=0.5, */*;q=0.1|SMILE",
+            "application/json, application/x-jackson-smile;q=0.5|JSON",
+            "application/x-jackson-smile;q=0, */*|JSON",
+            "*/*|JSON",
+            "application/*|JSON",
+            "text/html|JSON",
+            "not a media type, application/x-jackson-smile|JSON",
+            "null|JSON" })
+    void negotiate_should_pickSmile_onlyWhenAskedForExplicitly(String accept, WireFormat expected) {
+        assertThat(WireFormat.negotiate(accept)).isEqualTo(expected);
+    }
+
+    @Test
+    void of_should_recognizeSmileContentType() {
+        assertThat(WireFormat.of(MediaType.valueOf(WireFormat.SMILE_VALUE))).isEqualTo(WireFormat.SMILE);
+        assertThat(WireFormat.of(MediaType.APPLICATION_JSON)).isEqualTo(WireFormat.JSON);
+        assertThat(WireFormat.of(null)).isEqualTo(WireFormat.JSON);
+    }
+
+    @Test
+    void etag_should_suffixSmileOnly() {
+        assertThat(WireFormat.SMILE.etag("\"abc\"")).isEqualTo("\"abc-smile\"");
+        assertThat(WireFormat.SMILE.etag("W/\"abc\"")).isEqualTo("W/\"abc-smile\"");
+        assertThat(WireFormat.JSON.etag("\"abc\"")).isEqualTo("\"abc\"");
+        assertThat(WireFormat.SMILE.etag(null)).isNull();
+    }
+
+    @Test
+    void jsonETag_should_stripVariantOfAnyFormat() {
+        assertThat(WireFormat.jsonETag("\"abc-smile\"")).isEqualTo("\"abc\"");
+        assertThat(WireFormat.jsonETag("W/\"abc-smile\"")).isEqualTo("W/\"abc\"");
+        assertThat(WireFormat.jsonETag("\"abc\"")).isEqualTo("\"abc\"");
+        assertThat(WireFormat.jsonETag("\"abc-gzip\"")).isEqualTo("\"abc-gzip\"");
+    }
+}